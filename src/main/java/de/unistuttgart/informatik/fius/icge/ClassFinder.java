@@ -1,36 +1,55 @@
 /*
  * This source file is part of the FIUS ICGE project.
  * For more information see github.com/neumantm/ICGE
- * 
+ *
  * Copyright (c) 2018 the ICGE project authors.
  */
 
 package de.unistuttgart.informatik.fius.icge;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A class for finding classes in the class loader
- * 
+ * <p>
+ * The class files are read in parallel and only their headers are parsed. The result of scanning a class loader is
+ * cached and shared by all callers. Classes are loaded without being initialized.
+ *
  * @author Tim Neumann
  */
 public class ClassFinder {
+    /** The scanned classes per class loader and class path root. */
+    private static final Map<ClassLoader, Map<String, List<ClassInfo>>> SCAN_CACHE = new WeakHashMap<>();
+    /** The package all scanned classes are in. */
+    private static final String PACKAGE = "de";
+
     private ClassFinder() {
         //hide constructor
     }
 
     /**
      * Get all classes in the current context class loader, which match the filter.
-     * 
+     *
      * @param filter
      *            The filter to check each class against.
      * @return A list of classes
@@ -39,86 +58,303 @@ public class ClassFinder {
      */
     public static List<Class<?>> getClassesInClassLoader(Predicate<Class<?>> filter) throws IOException {
         ClassLoader loader = Thread.currentThread().getContextClassLoader();
-        List<URL> urls = Collections.list(loader.getResources("de"));
+        return loadClasses(scan(loader, root -> true), filter, loader);
+    }
 
-        List<Class<?>> classes = new ArrayList<>();
+    /**
+     * Get all classes in the current context class loader, which are subtypes of the given type and match the filter.
+     * <p>
+     * Only classes whose class file declares a path to the given type are loaded at all.
+     *
+     * @param supertype
+     *            The type all returned classes must be assignable to
+     * @param filter
+     *            The filter to check each class against.
+     * @return A list of classes
+     * @throws IOException
+     *             When an IO Error occurs.
+     */
+    public static List<Class<?>> getSubclassesInClassLoader(Class<?> supertype, Predicate<Class<?>> filter)
+            throws IOException {
+        return getSubclassesInClassLoader(Thread.currentThread().getContextClassLoader(), supertype, filter);
+    }
 
-        for (URL url : urls) {
-            if (url.getProtocol().equals("jar")) {
-                loadClassesFromJar(url, filter, classes, loader);
-            } else {
-                loadClassesFromFS(url, filter, classes, loader);
-            }
+    /**
+     * Get all classes in the given class loader, which are subtypes of the given type and match the filter.
+     * <p>
+     * Only classes whose class file declares a path to the given type are loaded at all.
+     *
+     * @param loader
+     *            The class loader to search
+     * @param supertype
+     *            The type all returned classes must be assignable to
+     * @param filter
+     *            The filter to check each class against.
+     * @return A list of classes
+     * @throws IOException
+     *             When an IO Error occurs.
+     */
+    public static List<Class<?>> getSubclassesInClassLoader(ClassLoader loader, Class<?> supertype,
+            Predicate<Class<?>> filter) throws IOException {
+        return getSubclassesInClassLoader(loader, supertype, filter, root -> true);
+    }
+
+    /**
+     * Get all classes in some class path roots of the given class loader, which are subtypes of the given type and match
+     * the filter. The other roots are not scanned at all.
+     *
+     * @param loader
+     *            The class loader to search
+     * @param supertype
+     *            The type all returned classes must be assignable to
+     * @param filter
+     *            The filter to check each class against.
+     * @param roots
+     *            Selects the roots to search, as returned by {@link ClassIndex#root(URL, String)}
+     * @return A list of classes
+     * @throws IOException
+     *             When an IO Error occurs.
+     */
+    public static List<Class<?>> getSubclassesInClassLoader(ClassLoader loader, Class<?> supertype,
+            Predicate<Class<?>> filter, Predicate<String> roots) throws IOException {
+        List<ClassInfo> infos = scan(loader, roots);
+
+        Map<String, ClassInfo> byName = new HashMap<>();
+        for (ClassInfo info : infos) {
+            byName.put(info.name, info);
         }
+        Map<String, Boolean> known = new HashMap<>();
+        List<ClassInfo> candidates = infos.stream().filter(info -> mayExtend(info.name, supertype.getName(), byName, known))
+                .collect(Collectors.toList());
+
+        return loadClasses(candidates, cls -> supertype.isAssignableFrom(cls) && filter.test(cls), loader);
+    }
+
+    /**
+     * Drops the cached scan results, so that classes added to the class path since then are found.
+     */
+    public static void clearCache() {
+        synchronized (SCAN_CACHE) {
+            SCAN_CACHE.clear();
+        }
+    }
 
-        return classes;
+    private static List<ClassInfo> scan(ClassLoader loader, Predicate<String> roots) throws IOException {
+        synchronized (SCAN_CACHE) {
+            Map<String, List<ClassInfo>> scanned = SCAN_CACHE.computeIfAbsent(loader, key -> new HashMap<>());
+            List<ClassInfo> infos = new ArrayList<>();
+            for (URL url : Collections.list(loader.getResources(PACKAGE))) {
+                String root = ClassIndex.root(url, PACKAGE);
+                if (!roots.test(root)) {
+                    continue;
+                }
+                List<ClassInfo> rootInfos = scanned.get(root);
+                if (rootInfos == null) {
+                    rootInfos = new ArrayList<>();
+                    if (url.getProtocol().equals("jar")) {
+                        scanJar(url, rootInfos);
+                    } else {
+                        scanFS(url, rootInfos);
+                    }
+                    rootInfos.removeIf(info -> info.name.endsWith("package-info") || info.name.endsWith("module-info"));
+                    rootInfos = Collections.unmodifiableList(rootInfos);
+                    scanned.put(root, rootInfos);
+                }
+                infos.addAll(rootInfos);
+            }
+            return infos;
+        }
     }
 
-    private static void loadClassesFromJar(URL url, Predicate<Class<?>> filter, List<Class<?>> classes, ClassLoader loader)
+    private static List<Class<?>> loadClasses(List<ClassInfo> infos, Predicate<Class<?>> filter, ClassLoader loader)
             throws IOException {
+        try {
+            return infos.parallelStream().map(info -> {
+                try {
+                    return Class.forName(info.name, false, loader);
+                } catch (ClassNotFoundException e) {
+                    throw new UncheckedIOException(new IOException(e));
+                }
+            }).filter(filter).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void scanJar(URL url, List<ClassInfo> infos) throws IOException {
         String urlS = url.getPath();
         String outerUrl = urlS.substring(0, urlS.indexOf('!'));
         String innerUrl = urlS.substring(urlS.indexOf('!') + 2);
         try (JarFile jar = new JarFile(new File(new URL(outerUrl).toURI()))) {
-            List<JarEntry> entries = Collections.list(jar.entries());
-            for (JarEntry e : entries) {
-                if (e.getName().endsWith(".class") && e.getName().startsWith(innerUrl)) {
-                    String className = convertPathToClassName(e.getName(), "");
-                    className = className.substring(0, className.length() - 6);
-                    Class<?> cls = Class.forName(className);
-                    if (filter.test(cls)) {
-                        classes.add(cls);
-                    }
+            List<JarEntry> entries = Collections.list(jar.entries()).stream()
+                    .filter(e -> e.getName().endsWith(".class") && e.getName().startsWith(innerUrl))
+                    .collect(Collectors.toList());
+            infos.addAll(parse(entries.parallelStream().map(e -> {
+                try (InputStream in = jar.getInputStream(e)) {
+                    return readFully(in);
+                } catch (IOException e1) {
+                    throw new UncheckedIOException(e1);
                 }
-            }
-        } catch (ClassNotFoundException e1) {
-            throw new IOException(e1);
+            })));
         } catch (URISyntaxException e2) {
             throw new IOException(e2);
         }
     }
 
-    private static void loadClassesFromFS(URL url, Predicate<Class<?>> filter, List<Class<?>> classes, ClassLoader loader)
-            throws IOException {
+    private static void scanFS(URL url, List<ClassInfo> infos) throws IOException {
         try {
-            File rootDir = new File(url.toURI()).getParentFile();
-            loadClassInFile(rootDir, classes, loader, rootDir.getPath(), filter);
-        } catch (URISyntaxException | ClassNotFoundException e) {
+            Path rootDir = new File(url.toURI()).toPath();
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(rootDir)) {
+                files = paths.filter(p -> p.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+            }
+            infos.addAll(parse(files.parallelStream().map(p -> {
+                try {
+                    return Files.readAllBytes(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })));
+        } catch (URISyntaxException e) {
             throw new IOException(e);
         }
     }
 
-    private static void loadClassInFile(File file, List<Class<?>> classes, ClassLoader loader, String rootDir,
-            Predicate<Class<?>> filter) throws ClassNotFoundException {
-        if (!file.exists()) throw new IllegalArgumentException("File does not exist.");
-        if (file.isDirectory()) {
-            for (File f : file.listFiles()) {
-                loadClassInFile(f, classes, loader, rootDir, filter);
-            }
-        } else {
-            String path = file.getPath();
-            if (path.endsWith(".class")) {
-                String className = convertPathToClassName(path, rootDir);
-                className = className.substring(0, className.length() - 6);
-                Class<?> cls = Class.forName(className);
-                if (filter.test(cls)) {
-                    classes.add(cls);
+    private static List<ClassInfo> parse(Stream<byte[]> classFiles) throws IOException {
+        try {
+            return classFiles.map(bytes -> {
+                try {
+                    return ClassInfo.read(bytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            }).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        int length = 0;
+        int read;
+        while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                byte[] larger = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, larger, 0, length);
+                buffer = larger;
             }
         }
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+        return result;
     }
 
-    private static String convertPathToClassName(String path, String rootDir) {
-        if (!path.startsWith(rootDir)) throw new IllegalStateException("File not starting with root dir!");
-        String[] fileSeps = new String[] { System.getProperty("file.separator"), "/" };
-        String relPath = path.substring(rootDir.length());
-        for (String fileSep : fileSeps) {
-            if (relPath.startsWith(fileSep)) {
-                relPath = relPath.substring(1);
+    /**
+     * Checks whether the class with the given name may be a subtype of the given supertype, only using the scanned class
+     * files. Types that were not scanned can not be checked and are assumed to possibly be subtypes.
+     */
+    private static boolean mayExtend(String name, String supertype, Map<String, ClassInfo> byName,
+            Map<String, Boolean> known) {
+        if (name.equals(supertype)) return true;
+        Boolean result = known.get(name);
+        if (result != null) return result;
+        ClassInfo info = byName.get(name);
+        if (info == null) return !name.equals("java.lang.Object");
+
+        known.put(name, false); // guards against cycles in broken class files
+        result = (info.superName != null) && mayExtend(info.superName, supertype, byName, known);
+        for (int i = 0; !result && (i < info.interfaces.length); ++i) {
+            result = mayExtend(info.interfaces[i], supertype, byName, known);
+        }
+        known.put(name, result);
+        return result;
+    }
+
+    /**
+     * The header of a class file
+     */
+    private static class ClassInfo {
+        final String name;
+        final String superName;
+        final String[] interfaces;
+
+        private ClassInfo(String name, String superName, String[] interfaces) {
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces;
+        }
+
+        /**
+         * Reads the name, the super class and the interfaces of a class from its class file without loading it.
+         *
+         * @param bytes
+         *            The content of the class file
+         * @return The class info
+         * @throws IOException
+         *             When the class file is malformed
+         */
+        static ClassInfo read(byte[] bytes) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != 0xCAFEBABE) throw new IOException("Not a class file.");
+            in.readUnsignedShort(); // minor version
+            in.readUnsignedShort(); // major version
+
+            int count = in.readUnsignedShort();
+            String[] utf8 = new String[count];
+            int[] classNameIndex = new int[count];
+            for (int i = 1; i < count; ++i) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1: // Utf8
+                        utf8[i] = in.readUTF();
+                        break;
+                    case 7: // Class
+                        classNameIndex[i] = in.readUnsignedShort();
+                        break;
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        in.skipBytes(2);
+                        break;
+                    case 15: // MethodHandle
+                        in.skipBytes(3);
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        in.skipBytes(4);
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        in.skipBytes(8);
+                        ++i; // takes two entries
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag + ".");
+                }
+            }
+
+            in.readUnsignedShort(); // access flags
+            String name = className(in.readUnsignedShort(), utf8, classNameIndex);
+            String superName = className(in.readUnsignedShort(), utf8, classNameIndex);
+            String[] interfaces = new String[in.readUnsignedShort()];
+            for (int i = 0; i < interfaces.length; ++i) {
+                interfaces[i] = className(in.readUnsignedShort(), utf8, classNameIndex);
             }
-            relPath = relPath.replace(fileSep, ".");
+            return new ClassInfo(name, superName, interfaces);
         }
-        return relPath;
 
+        private static String className(int index, String[] utf8, int[] classNameIndex) {
+            if (index == 0) return null;
+            return utf8[classNameIndex[index]].replace('/', '.');
+        }
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A class for reading the class indexes generated at compile time by the
+ * {@link de.unistuttgart.informatik.fius.icge.processing.IndexProcessor IndexProcessor}.
+ * <p>
+ * An index is a resource containing one binary class name per line. Every jar or class directory can contain its own
+ * index, all of them are combined.
+ */
+public class ClassIndex {
+    /** The resource listing all task classes. */
+    public static final String TASK_INDEX = "META-INF/icge/tasks.index";
+
+    private ClassIndex() {
+        //hide constructor
+    }
+
+    /**
+     * Get all class names listed in the given index resource of the current context class loader.
+     *
+     * @param resource
+     *            The name of the index resource
+     * @return The class names or null if there is no such index
+     * @throws IOException
+     *             When an IO Error occurs.
+     */
+    public static Set<String> getIndexedClassNames(String resource) throws IOException {
+        return getIndexedClassNames(Thread.currentThread().getContextClassLoader(), resource);
+    }
+
+    /**
+     * Get all class names listed in the given index resource of the given class loader.
+     *
+     * @param loader
+     *            The class loader to read the index from
+     * @param resource
+     *            The name of the index resource
+     * @return The class names or null if there is no such index
+     * @throws IOException
+     *             When an IO Error occurs.
+     */
+    public static Set<String> getIndexedClassNames(ClassLoader loader, String resource) throws IOException {
+        List<URL> urls = Collections.list(loader.getResources(resource));
+        if (urls.isEmpty()) return null;
+
+        Set<String> names = new LinkedHashSet<>();
+        for (URL url : urls) {
+            try (InputStream in = url.openStream()) {
+                names.addAll(readIndex(in));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Get the class path roots of the given class loader which contain the given index resource.
+     *
+     * @param loader
+     *            The class loader to read the index from
+     * @param resource
+     *            The name of the index resource
+     * @return The roots as returned by {@link #root(URL, String)}
+     * @throws IOException
+     *             When an IO Error occurs.
+     */
+    public static Set<String> getIndexedRoots(ClassLoader loader, String resource) throws IOException {
+        Set<String> roots = new HashSet<>();
+        for (URL url : Collections.list(loader.getResources(resource))) {
+            roots.add(root(url, resource));
+        }
+        return roots;
+    }
+
+    /**
+     * Get the class path root, i.e. the jar or class directory, a resource was found in.
+     *
+     * @param url
+     *            The URL of the resource
+     * @param resource
+     *            The name of the resource
+     * @return The URL of the root as a string
+     */
+    public static String root(URL url, String resource) {
+        String path = url.toString();
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path.endsWith(resource) ? path.substring(0, path.length() - resource.length()) : path;
+    }
+
+    /**
+     * Get all classes listed in the given index resource of the current context class loader, which match the filter.
+     * <p>
+     * The classes are loaded without being initialized. Listed classes that do not exist anymore are skipped.
+     *
+     * @param resource
+     *            The name of the index resource
+     * @param filter
+     *            The filter to check each class against.
+     * @return A list of classes or null if there is no such index
+     * @throws IOException
+     *             When an IO Error occurs.
+     */
+    public static List<Class<?>> getIndexedClasses(String resource, Predicate<Class<?>> filter) throws IOException {
+        return getIndexedClasses(Thread.currentThread().getContextClassLoader(), resource, filter);
+    }
+
+    /**
+     * Get all classes listed in the given index resource of the given class loader, which match the filter.
+     * <p>
+     * The classes are loaded without being initialized. Listed classes that do not exist anymore are skipped.
+     *
+     * @param loader
+     *            The class loader to read the index from and to load the classes with
+     * @param resource
+     *            The name of the index resource
+     * @param filter
+     *            The filter to check each class against.
+     * @return A list of classes or null if there is no such index
+     * @throws IOException
+     *             When an IO Error occurs.
+     */
+    public static List<Class<?>> getIndexedClasses(ClassLoader loader, String resource, Predicate<Class<?>> filter)
+            throws IOException {
+        Set<String> names = getIndexedClassNames(loader, resource);
+        if (names == null) return null;
+
+        List<Class<?>> classes = new ArrayList<>(names.size());
+        for (String name : names) {
+            Class<?> cls;
+            try {
+                cls = Class.forName(name, false, loader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                continue; // stale entry of a class that was removed after the index was written
+            }
+            if (filter.test(cls)) {
+                classes.add(cls);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Reads the class names from an index.
+     *
+     * @param in
+     *            The stream to read the index from
+     * @return The class names in the order they are listed
+     * @throws IOException
+     *             When an IO Error occurs.
+     */
+    public static List<String> readIndex(InputStream in) throws IOException {
+        List<String> names = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                names.add(line);
+            }
+        }
+        return names;
+    }
+}
@@ -13,6 +13,7 @@ import java.util.Collections;
 import java.util.Comparator;
 
 import de.unistuttgart.informatik.fius.icge.course.TaskTemplate;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationCancelled;
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionManager;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 import de.unistuttgart.informatik.fius.icge.workbench.Workbench;
@@ -27,6 +28,8 @@ public class Engine {
     
     private Workbench _workbench;
     private InspectionManager _inspectionManager;
+    private TaskSupervisor _supervisor;
+    private TaskSupervisor.Task _task;
     
     private boolean started = false;
     
@@ -42,10 +45,14 @@ public class Engine {
         this.started = true;
         
         this._inspectionManager = new InspectionManager();
+        this._supervisor = new TaskSupervisor(new TaskSupervisor.Budget(0, 0, 0, TaskSupervisor.BUSY_LOOP_MILLIS));
         
         this._workbench = new Workbench("Mario-Simulator");
         this._workbench.setDropDownToolTip("Chose action...");
-        this._workbench.addDropDownAction("Chose action...", () -> this._workbench.setSimulation(null));
+        this._workbench.addDropDownAction("Chose action...", () -> {
+            this.cancelTask("No task is selected anymore.");
+            this._workbench.setSimulation(null);
+        });
         
         try {
             SolutionLoader.loadSolutions(this::addTask);
@@ -58,39 +65,57 @@ public class Engine {
     private void addTask(Class<? extends TaskTemplate> task) {
         String name = task.getSimpleName();
         this._workbench.addDropDownAction(name, () -> {
-            new Thread(() -> {
+            this.cancelTask("Another task was selected.");
+            TaskTemplate[] obj = new TaskTemplate[1];
+            this._task = this._supervisor.start(name, () -> {
                 try {
-                    TaskTemplate obj = task.newInstance();
-                    this._workbench.setSimulation(obj.getSimulation());
-                    Collection<WorldObject> wobs = obj.getSimulation().territory().worldObjects();
-                    if (!wobs.isEmpty()) {
-                        Comparator<WorldObject> compCol = (a, b) -> a.column - b.column;
-                        Comparator<WorldObject> compRow = (a, b) -> a.row - b.row;
-                        int xMin = Collections.min(wobs, compCol).column;
-                        int xMax = Collections.max(wobs, compCol).column;
-                        int yMin = Collections.min(wobs, compRow).row;
-                        int yMax = Collections.max(wobs, compRow).row;
-                        this._workbench.setCenteredColumn(0.5f * (xMax + xMin));
-                        this._workbench.setCenteredRow(0.5f * (yMax + yMin));
-                    }
-                    try {
-                        obj.test();
-                    } catch (AssertionError e) {
-                        this._workbench.println("Test failed!");
-                        this._workbench.println(e.getMessage());
-                        e.printStackTrace();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        this._workbench.println(e.toString());
-                    }
-                    this._workbench.println(name + " completed :-)");
+                    obj[0] = task.newInstance(); // not on the event dispatch thread, the territory may be large
                 } catch (InstantiationException | IllegalAccessException e) {
                     this._workbench.println("Internal error!");
                     e.printStackTrace();
+                    return null;
+                }
+                return obj[0].getSimulation();
+            }, () -> {
+                this._workbench.setSimulation(obj[0].getSimulation());
+                Collection<WorldObject> wobs = obj[0].getSimulation().territory().worldObjects();
+                if (!wobs.isEmpty()) {
+                    Comparator<WorldObject> compCol = (a, b) -> a.column - b.column;
+                    Comparator<WorldObject> compRow = (a, b) -> a.row - b.row;
+                    int xMin = Collections.min(wobs, compCol).column;
+                    int xMax = Collections.max(wobs, compCol).column;
+                    int yMin = Collections.min(wobs, compRow).row;
+                    int yMax = Collections.max(wobs, compRow).row;
+                    this._workbench.setCenteredColumn(0.5f * (xMax + xMin));
+                    this._workbench.setCenteredRow(0.5f * (yMax + yMin));
+                }
+                try {
+                    obj[0].test();
+                } catch (SimulationCancelled e) {
+                    this._workbench.println(name + " cancelled: " + e.getMessage());
+                    return;
+                } catch (AssertionError e) {
+                    this._workbench.println("Test failed!");
+                    this._workbench.println(e.getMessage());
+                    e.printStackTrace();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    this._workbench.println(e.toString());
                 }
-            }).start();
+                this._workbench.println(name + " completed :-)");
+            });
         });
     }
+
+    /**
+     * Cancels the task started last, so that it does not keep running next to a new one.
+     */
+    private void cancelTask(String reason) {
+        if (this._task != null) {
+            this._task.cancel(reason);
+            this._task = null;
+        }
+    }
     
     /**
      * Get's {@link #_inspectionManager _inspectionManager}
@@ -9,7 +9,9 @@ package de.unistuttgart.informatik.fius.icge;
 
 import java.io.IOException;
 import java.lang.reflect.Modifier;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -28,6 +30,9 @@ public class SolutionLoader {
 
     /**
      * Loads all solutions and registers them with the given consumer.
+     * <p>
+     * The solutions are read from the task indexes written at compile time. The jars and class directories without an
+     * index, e.g. compiled without annotation processing, are scanned for them.
      * 
      * @param registration
      *            The consumer to register each solution with.
@@ -35,8 +40,31 @@ public class SolutionLoader {
      *             When an IO error occurs.
      */
     public static void loadSolutions(Consumer<Class<? extends TaskTemplate>> registration) throws IOException {
-        List<Class<? extends TaskTemplate>> solutions = ClassFinder
-                .getClassesInClassLoader(SolutionLoader::isValidSolutionClass).stream().map(SolutionLoader::castToCorrectClass)
+        loadSolutions(Thread.currentThread().getContextClassLoader(), registration);
+    }
+
+    /**
+     * Loads all solutions of the given class loader and registers them with the given consumer.
+     * 
+     * @param loader
+     *            The class loader to load the solutions from.
+     * @param registration
+     *            The consumer to register each solution with.
+     * @throws IOException
+     *             When an IO error occurs.
+     */
+    public static void loadSolutions(ClassLoader loader, Consumer<Class<? extends TaskTemplate>> registration)
+            throws IOException {
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        List<Class<?>> indexed = ClassIndex.getIndexedClasses(loader, ClassIndex.TASK_INDEX,
+                SolutionLoader::isValidSolutionClass);
+        if (indexed != null) {
+            classes.addAll(indexed);
+        }
+        Set<String> indexedRoots = ClassIndex.getIndexedRoots(loader, ClassIndex.TASK_INDEX);
+        classes.addAll(ClassFinder.getSubclassesInClassLoader(loader, TaskTemplate.class,
+                SolutionLoader::isValidSolutionClass, root -> !indexedRoots.contains(root)));
+        List<Class<? extends TaskTemplate>> solutions = classes.stream().map(SolutionLoader::castToCorrectClass)
                 .collect(Collectors.toList());
 
         solutions.sort((cls1, cls2) -> {
@@ -0,0 +1,302 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+
+/**
+ * Supervises the threads running tasks.
+ * <p>
+ * Every few milliseconds the supervisor checks the ticks, CPU time and wall time used by each task against its
+ * {@link Budget}. It also detects busy loops: a task whose entities do not act while its thread keeps using the CPU. A
+ * task that exceeds its budget is cancelled by {@link Simulation#cancel(String)}, which stops its threads the next time
+ * they call into the simulation. A thread that never calls into the simulation again can not be stopped; it is only given
+ * the lowest priority.
+ */
+public class TaskSupervisor {
+    /** How often the tasks are checked. */
+    private static final long PERIOD_MILLIS = 100;
+    /** The share of the wall time a thread has to use the CPU for to be considered busy. */
+    private static final double BUSY_SHARE = 0.8;
+    /** The default time a task may keep the CPU busy without any entity acting before it is cancelled. */
+    public static final long BUSY_LOOP_MILLIS = 5000;
+
+    private final Budget _budget;
+    private final ThreadMXBean _threads = ManagementFactory.getThreadMXBean();
+    private final Set<Task> _tasks = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService _timer;
+
+    /**
+     * Creates a new task supervisor
+     *
+     * @param budget
+     *            The budget of every task
+     */
+    public TaskSupervisor(Budget budget) {
+        this._budget = budget;
+        if (this._threads.isThreadCpuTimeSupported() && !this._threads.isThreadCpuTimeEnabled()) {
+            this._threads.setThreadCpuTimeEnabled(true);
+        }
+        this._timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "task-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this._timer.scheduleAtFixedRate(this::check, PERIOD_MILLIS, PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a simulation and runs the given body on a new supervised thread. The caller does not wait for the setup,
+     * which may have to build a large territory; the task is supervised once the setup returned its simulation.
+     *
+     * @param name
+     *            The name of the thread
+     * @param setup
+     *            Creates the simulation of the task on the new thread; if it returns null, the body is not run
+     * @param body
+     *            The task to run
+     * @return The started task
+     */
+    public Task start(String name, Supplier<Simulation> setup, Runnable body) {
+        Task task = new Task();
+        Thread thread = new Thread(() -> {
+            Simulation sim = setup.get();
+            if (sim == null) return;
+            task.attach(sim);
+            try {
+                if (sim.cancelReason() == null) {
+                    body.run();
+                }
+            } finally {
+                task.close();
+            }
+        }, name);
+        thread.setDaemon(true);
+        task._thread = thread;
+        thread.start();
+        return task;
+    }
+
+    /**
+     * Supervises the current thread from now on until the returned task is closed.
+     *
+     * @param sim
+     *            The simulation of the task
+     * @return The task
+     */
+    public Task supervise(Simulation sim) {
+        Task task = new Task();
+        task._thread = Thread.currentThread();
+        task.attach(sim);
+        return task;
+    }
+
+    /**
+     * Stops supervising. The tasks which are still running are not cancelled.
+     */
+    public void shutdown() {
+        this._timer.shutdownNow();
+    }
+
+    private void check() {
+        for (Task task : this._tasks) {
+            try {
+                task.check();
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // must not stop the timer
+            }
+        }
+    }
+
+    /**
+     * The limits of a task. A limit of 0 means unlimited.
+     */
+    public static class Budget {
+        /** The maximum number of simulation ticks. */
+        public final int maxTicks;
+        /** The maximum CPU time of the thread of the task in milliseconds. */
+        public final long maxCpuMillis;
+        /** The maximum wall time in milliseconds. */
+        public final long maxWallMillis;
+        /** The maximum time in milliseconds the thread may keep the CPU busy without any entity acting. */
+        public final long busyLoopMillis;
+
+        /**
+         * Creates a new budget
+         *
+         * @param maxTicks
+         *            The maximum number of simulation ticks or 0
+         * @param maxCpuMillis
+         *            The maximum CPU time of the thread of the task in milliseconds or 0
+         * @param maxWallMillis
+         *            The maximum wall time in milliseconds or 0
+         * @param busyLoopMillis
+         *            The maximum time in milliseconds the thread may keep the CPU busy without any entity acting or 0
+         */
+        public Budget(int maxTicks, long maxCpuMillis, long maxWallMillis, long busyLoopMillis) {
+            this.maxTicks = maxTicks;
+            this.maxCpuMillis = maxCpuMillis;
+            this.maxWallMillis = maxWallMillis;
+            this.busyLoopMillis = busyLoopMillis;
+        }
+    }
+
+    /**
+     * A supervised task
+     */
+    public class Task implements AutoCloseable {
+        private volatile Simulation _sim;
+        private volatile Thread _thread;
+        private volatile String _cancelReason;
+        private long _startWall;
+        private int _startTick;
+        private long _startCpu = -1;
+
+        private int _lastActions;
+        private long _lastProgressWall;
+        private long _lastProgressCpu;
+        private boolean _demoted = false;
+
+        Task() {
+            //created by the supervisor
+        }
+
+        /**
+         * @return The thread of this task
+         */
+        public Thread thread() {
+            return this._thread;
+        }
+
+        /**
+         * @return The simulation of this task or null if it is not created yet
+         */
+        public Simulation simulation() {
+            return this._sim;
+        }
+
+        /**
+         * @return The CPU time used by the thread of this task so far in milliseconds or -1 if it is not known
+         */
+        public long cpuTimeMillis() {
+            long cpu = this.cpuTime();
+            return (cpu < 0) || (this._startCpu < 0) ? -1 : (cpu - this._startCpu) / 1000000;
+        }
+
+        /**
+         * Cancels this task. See {@link Simulation#cancel(String)}.
+         *
+         * @param reason
+         *            Why the task is cancelled
+         */
+        public synchronized void cancel(String reason) {
+            if (this._cancelReason == null) {
+                this._cancelReason = reason == null ? "Cancelled." : reason;
+            }
+            Simulation sim = this._sim;
+            if ((sim != null) && (sim.cancelReason() == null)) {
+                sim.cancel(this._cancelReason);
+            }
+            Thread thread = this._thread;
+            if (thread != null) {
+                thread.interrupt(); // wakes up sleeping threads
+            }
+        }
+
+        /**
+         * @return Why this task was cancelled or null if it was not
+         */
+        public String cancelReason() {
+            Simulation sim = this._sim;
+            return sim == null ? this._cancelReason : sim.cancelReason();
+        }
+
+        /**
+         * Stops supervising this task.
+         */
+        @Override
+        public void close() {
+            TaskSupervisor.this._tasks.remove(this);
+            if (this._thread == Thread.currentThread()) {
+                Simulation.detachCurrentThread();
+            }
+        }
+
+        private void attach(Simulation sim) {
+            synchronized (this) {
+                this._sim = sim;
+                if ((this._cancelReason != null) && (sim.cancelReason() == null)) { // cancelled during the setup
+                    sim.cancel(this._cancelReason);
+                }
+            }
+            sim.attachCurrentThread();
+            this._startWall = System.nanoTime();
+            this._startTick = sim.tickCount();
+            this._lastActions = sim.actionCount();
+            this._lastProgressWall = this._startWall;
+            this._startCpu = this.cpuTime();
+            this._lastProgressCpu = this._startCpu;
+            TaskSupervisor.this._tasks.add(this);
+        }
+
+        private long cpuTime() {
+            Thread thread = this._thread;
+            if ((thread == null) || !TaskSupervisor.this._threads.isThreadCpuTimeSupported()) return -1;
+            return TaskSupervisor.this._threads.getThreadCpuTime(thread.getId());
+        }
+
+        private void check() {
+            Thread thread = this._thread;
+            if ((thread == null) || !thread.isAlive()) {
+                TaskSupervisor.this._tasks.remove(this);
+                return;
+            }
+            if (this._sim.cancelReason() != null) {
+                if (!this._demoted) {
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    this._demoted = true;
+                }
+                return;
+            }
+
+            Budget budget = TaskSupervisor.this._budget;
+            long now = System.nanoTime();
+            long cpu = this.cpuTime();
+            int tick = this._sim.tickCount();
+            int actions = this._sim.actionCount();
+
+            if ((budget.maxTicks > 0) && ((tick - this._startTick) > budget.maxTicks)) {
+                this.cancel("The task used more than " + budget.maxTicks + " ticks.");
+            } else if ((budget.maxWallMillis > 0) && ((now - this._startWall) / 1000000 > budget.maxWallMillis)) {
+                this.cancel("The task took longer than " + budget.maxWallMillis + " ms.");
+            } else if ((budget.maxCpuMillis > 0) && (this.cpuTimeMillis() > budget.maxCpuMillis)) {
+                this.cancel("The task used more than " + budget.maxCpuMillis + " ms of CPU time.");
+            } else if (actions != this._lastActions) {
+                this._lastActions = actions;
+                this._lastProgressWall = now;
+                this._lastProgressCpu = cpu;
+            } else if ((budget.busyLoopMillis > 0) && (cpu >= 0)) {
+                long idleWall = now - this._lastProgressWall;
+                if ((idleWall / 1000000 > budget.busyLoopMillis)
+                        && ((cpu - this._lastProgressCpu) > (BUSY_SHARE * idleWall))) {
+                    this.cancel("The task kept the CPU busy for " + (idleWall / 1000000)
+                            + " ms without any entity acting. Is there an endless loop?");
+                }
+            }
+        }
+    }
+}
@@ -7,20 +7,45 @@
 
 package de.unistuttgart.informatik.fius.icge.animations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.TerritoryDelta;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 
 /**
  * A wrapper for territory which supports annimations.
+ * <p>
+ * Every territory of an animated territory has a version. The deltas leading to the territory from the last few
+ * versions are kept, so that views can update what they derived from an earlier territory instead of looking at the
+ * whole territory again.
+ * <p>
+ * Animated territories are immutable once they are made public, so they can be passed from the simulation thread to
+ * the views: every change creates a new animated territory with its own animations.
  * 
  * @author haslersn
  */
 public class AnimatedTerritory {
+    /** The maximum number of deltas kept. */
+    private static final int MAX_DELTAS = 64;
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private static final long[] NO_VERSIONS = new long[0];
+    private static final TerritoryDelta[] NO_DELTAS = new TerritoryDelta[0];
 
     private final Territory _tty;
-    private HashMap<WorldObject, Animation> _runningAnimations = new HashMap<>();
+    private final long _version;
+    /** The versions the deltas start from. */
+    private final long[] _deltaVersions;
+    /** The deltas leading to the territory, the last one from the previous version. */
+    private final TerritoryDelta[] _deltas;
+    private HashMap<WorldObject, Animation> _runningAnimations;
 
     /**
      * Create a new animated territory with the given territory
@@ -29,7 +54,15 @@ public class AnimatedTerritory {
      *            The territory to use
      */
     public AnimatedTerritory(Territory tty) {
+        this(tty, VERSIONS.incrementAndGet(), NO_VERSIONS, NO_DELTAS);
+    }
+
+    private AnimatedTerritory(Territory tty, long version, long[] deltaVersions, TerritoryDelta[] deltas) {
         this._tty = tty;
+        this._version = version;
+        this._deltaVersions = deltaVersions;
+        this._deltas = deltas;
+        this._runningAnimations = new HashMap<>();
     }
 
     /**
@@ -44,8 +77,41 @@ public class AnimatedTerritory {
      */
     public AnimatedTerritory setTerritory(Territory tty) {
         AnimatedTerritory result = new AnimatedTerritory(tty);
-        result._runningAnimations = this._runningAnimations;
-        result._runningAnimations.keySet().removeIf(wob -> !tty.contains(wob));
+        this._runningAnimations.forEach((wob, anim) -> {
+            if (tty.contains(wob)) {
+                result._runningAnimations.put(wob, anim);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Get a new animated territory from the current one with a new territory, which differs from the current territory by
+     * the given delta.
+     * <p>
+     * The new animated territory will contain all animations from the current one, except if the world object does not exist
+     * any more.
+     * 
+     * @param tty
+     *            The new territory
+     * @param delta
+     *            The delta leading from the current territory to the new territory
+     * @return The new animated territory
+     */
+    public AnimatedTerritory setTerritory(Territory tty, TerritoryDelta delta) {
+        int kept = Math.min(this._deltas.length, MAX_DELTAS - 1);
+        long[] deltaVersions = Arrays.copyOfRange(this._deltaVersions, this._deltas.length - kept, this._deltas.length + 1);
+        TerritoryDelta[] deltas = Arrays.copyOfRange(this._deltas, this._deltas.length - kept, this._deltas.length + 1);
+        deltaVersions[kept] = this._version;
+        deltas[kept] = delta;
+        AnimatedTerritory result = new AnimatedTerritory(tty, VERSIONS.incrementAndGet(), deltaVersions, deltas);
+        Set<WorldObject> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(delta.removed());
+        this._runningAnimations.forEach((wob, anim) -> {
+            if (!removed.contains(wob)) {
+                result._runningAnimations.put(wob, anim);
+            }
+        });
         return result;
     }
 
@@ -57,8 +123,12 @@ public class AnimatedTerritory {
      * @return A new animated territory with all finished animations removed
      */
     public AnimatedTerritory removeFinished(int tick) {
-        AnimatedTerritory result = this.setTerritory(this._tty);
-        this._runningAnimations.values().removeIf(anim -> anim.end <= tick);
+        AnimatedTerritory result = new AnimatedTerritory(this._tty, this._version, this._deltaVersions, this._deltas);
+        this._runningAnimations.forEach((wob, anim) -> {
+            if (anim.end > tick) {
+                result._runningAnimations.put(wob, anim);
+            }
+        });
         return result;
     }
 
@@ -69,6 +139,36 @@ public class AnimatedTerritory {
         return this._tty;
     }
 
+    /**
+     * @return The version of the territory
+     */
+    public long version() {
+        return this._version;
+    }
+
+    /**
+     * Get the deltas leading from the territory of an earlier version to the territory of this animated territory
+     * 
+     * @param version
+     *            The earlier version
+     * @return The deltas in the order they have to be applied or null if they are not known
+     */
+    public List<TerritoryDelta> deltasSince(long version) {
+        if (version == this._version) return Collections.emptyList();
+        for (int i = 0; i < this._deltas.length; ++i) {
+            if (this._deltaVersions[i] == version)
+                return Collections.unmodifiableList(Arrays.asList(this._deltas).subList(i, this._deltas.length));
+        }
+        return null;
+    }
+
+    /**
+     * @return A copy of the world objects which have an animation
+     */
+    public List<WorldObject> animatedWorldObjects() {
+        return new ArrayList<>(this._runningAnimations.keySet());
+    }
+
     /**
      * Get the animation for a given world object
      * 
@@ -12,14 +12,21 @@ public class Animation {
     public final int begin;
     public final int end;
     public final AnimationType type;
+    /** The number of fields covered by this animation */
+    public final int distance;
 
     public static enum AnimationType {
         MOVE, TURN_LEFT;
     }
 
     public Animation(int begin, int end, AnimationType type) {
+        this(begin, end, type, 1);
+    }
+
+    public Animation(int begin, int end, AnimationType type, int distance) {
         this.begin = begin;
         this.end = end;
         this.type = type;
+        this.distance = distance;
     }
 }
@@ -8,20 +8,24 @@
 package de.unistuttgart.informatik.fius.icge.animations;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 
 import de.unistuttgart.informatik.fius.icge.animations.Animation.AnimationType;
 import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
 import de.unistuttgart.informatik.fius.icge.simulation.MovableEntity.MovableEntityEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.MovableEntity.MoveEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.Change;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.TickEvent;
+import de.unistuttgart.informatik.fius.icge.territory.TerritoryDelta;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 
 public class SimulationAnimator {
     
     private final Simulation _sim;
-    private AnimatedTerritory _animated;
+    private volatile AnimatedTerritory _animated;
     private int _delay = 25; // delay is in simulation ticks
     
     public SimulationAnimator(Simulation sim) {
@@ -60,7 +64,9 @@ public class SimulationAnimator {
                 sima._animated = sima._animated.removeFinished(se.simulation.tickCount());
             }
             if (se.simulation.territory() == sima._animated.territory()) return true;
-            AnimatedTerritory nextAnimated = sima._animated.setTerritory(se.simulation.territory());
+            List<Change> changes = se.changes();
+            AnimatedTerritory nextAnimated = changes.isEmpty() ? sima._animated.setTerritory(se.simulation.territory())
+                    : sima._animated.setTerritory(se.simulation.territory(), delta(changes));
             if (se instanceof MovableEntityEvent) {
                 MovableEntityEvent mee = (MovableEntityEvent) se;
                 int begin = mee.simulation.tickCount();
@@ -69,7 +75,8 @@ public class SimulationAnimator {
                     end = begin + 1;
                 }
                 WorldObject wob = mee.entity.worldObject();
-                Animation anim = new Animation(begin, end, animationType(mee));
+                int distance = (mee instanceof MoveEvent) ? ((MoveEvent) mee).distance : 1;
+                Animation anim = new Animation(begin, end, animationType(mee), distance);
                 nextAnimated.setAnimation(wob, anim);
             }
             sima._animated = nextAnimated;
@@ -77,6 +84,20 @@ public class SimulationAnimator {
         });
     }
     
+    private static TerritoryDelta delta(List<Change> changes) {
+        List<WorldObject> removed = new ArrayList<>(changes.size());
+        List<WorldObject> added = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            if (change.before != null) {
+                removed.add(change.before);
+            }
+            if (change.after != null) {
+                added.add(change.after);
+            }
+        }
+        return new TerritoryDelta(removed, added);
+    }
+    
     private static AnimationType animationType(MovableEntityEvent mee) {
         if (mee instanceof MoveEvent) return AnimationType.MOVE;
         // TurnLeftEvent is the only other subclass of abstract MovableEntityEvent
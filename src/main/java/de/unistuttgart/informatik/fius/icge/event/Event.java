@@ -7,4 +7,15 @@
 
 package de.unistuttgart.informatik.fius.icge.event;
 
-public interface Event {}
+public interface Event {
+
+    /**
+     * Get the object whose monitor is held while this event is handled. Events with the same lock are handled one
+     * after another.
+     * 
+     * @return The lock; by default all events share the same one
+     */
+    default Object dispatchLock() {
+        return EventDispatcher.class;
+    }
+}
@@ -8,58 +8,72 @@
 package de.unistuttgart.informatik.fius.icge.event;
 
 import java.util.ArrayDeque;
-import java.util.ArrayList;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Dispatches events to the listeners registered for them.
+ * <p>
+ * Events are handled on the thread that raises them. Events with the same {@link Event#dispatchLock() dispatch lock}
+ * are handled one after another, while events with different locks, like the events of two simulations, can be
+ * handled at the same time.
+ */
 public class EventDispatcher {
 
-    private static ArrayList<Listening> _listenings = new ArrayList<>();
-    private static ArrayDeque<Runnable> _afterwards = new ArrayDeque<>();
-    private static int _raiseRecursionDepth = 0;
+    private static final CopyOnWriteArrayList<Listening> _listenings = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<RaiseState> _raiseState = ThreadLocal.withInitial(RaiseState::new);
 
-    public static synchronized EventListener addListener(Class<?> listensFor, EventListener listener) {
+    public static EventListener addListener(Class<?> listensFor, EventListener listener) {
         if (!Event.class.isAssignableFrom(listensFor)) throw new IllegalArgumentException();
         _listenings.add(new Listening(listensFor, listener));
         return listener;
     }
 
-    public static synchronized boolean removeListener(EventListener listener) {
+    public static boolean removeListener(EventListener listener) {
         return _listenings.removeIf(entry -> entry.listener == listener);
     }
 
-    public static synchronized void raise(Event e) throws RaiseAlreadyActive {
+    public static void raise(Event e) throws RaiseAlreadyActive {
         EventDispatcher.raise(e, () -> {});
     }
 
     /**
-     * Raises an event, then runs an `afterTask` and finally runs the
+     * Raises an event, then runs an `afterTask` and finally runs the tasks scheduled via {@link #afterwards(Runnable)}
+     * while the event was handled. Everything is run while holding the {@link Event#dispatchLock() dispatch lock} of
+     * the event.
      * 
      * @param e
+     *            The event to raise
      * @param afterTask
+     *            The task to run after all listeners handled the event
      * @throws RaiseAlreadyActive
+     *             When the current thread is already raising an event
      */
-    public static synchronized void raise(Event e, Runnable afterTask) throws RaiseAlreadyActive {
-        if (EventDispatcher._raiseRecursionDepth != 0) {
+    public static void raise(Event e, Runnable afterTask) throws RaiseAlreadyActive {
+        RaiseState state = _raiseState.get();
+        if (state.recursionDepth != 0) {
             throw new RaiseAlreadyActive(); // recursive raise is not supported for now
         }
 
-        // actual event hadling
-        ++EventDispatcher._raiseRecursionDepth;
-        try {
-            for (Listening entry : new ArrayList<>(_listenings)) { // new list cause it might get modified concurrently
-                if (entry.listensFor.isAssignableFrom(e.getClass())) {
-                    if (!entry.listener.handle(e)) {
-                        removeListener(entry.listener);
+        synchronized (e.dispatchLock()) {
+            // actual event hadling
+            ++state.recursionDepth;
+            try {
+                for (Listening entry : _listenings) { // iterates over a snapshot cause it might get modified concurrently
+                    if (entry.listensFor.isAssignableFrom(e.getClass())) {
+                        if (!entry.listener.handle(e)) {
+                            removeListener(entry.listener);
+                        }
                     }
                 }
+            } finally {
+                --state.recursionDepth;
             }
-        } finally {
-            --EventDispatcher._raiseRecursionDepth;
-        }
 
-        // First run the passed `afterTask` and then the tasks that have been scheduled via `EventDispatcher.afterwards()`
-        afterTask.run();
-        while (!_afterwards.isEmpty()) {
-            _afterwards.pop().run();
+            // First run the passed `afterTask` and then the tasks that have been scheduled via `EventDispatcher.afterwards()`
+            afterTask.run();
+            while (!state.afterwards.isEmpty()) {
+                state.afterwards.pop().run();
+            }
         }
     }
 
@@ -72,12 +86,19 @@ public class EventDispatcher {
      * @param rn
      *            The runnable to schedule
      */
-    public static synchronized void afterwards(Runnable rn) {
-        if (EventDispatcher._raiseRecursionDepth == 0) {
+    public static void afterwards(Runnable rn) {
+        RaiseState state = _raiseState.get();
+        if (state.recursionDepth == 0) {
             throw new RaiseNotActive(); // must have an active raise to schedule via `afterwards()`
         }
 
-        _afterwards.add(rn);
+        state.afterwards.add(rn);
+    }
+
+    /** The raise in progress on a thread */
+    private static class RaiseState {
+        public int recursionDepth = 0;
+        public final ArrayDeque<Runnable> afterwards = new ArrayDeque<>();
     }
 
     private static class Listening {
@@ -0,0 +1,424 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.grading;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import de.unistuttgart.informatik.fius.icge.SolutionLoader;
+import de.unistuttgart.informatik.fius.icge.TaskSupervisor;
+import de.unistuttgart.informatik.fius.icge.course.TaskTemplate;
+
+/**
+ * Runs tasks in several worker processes on the local machine.
+ * <p>
+ * Each worker process is a separate JVM running {@link GradingWorker}, so a task that exhausts the memory or never
+ * terminates only takes down its own worker. Such a worker is killed and replaced by a new one. Every worker has its
+ * own queue of tasks; a worker whose queue is empty takes tasks from the back of the other queues.
+ */
+public class GradingCoordinator {
+    /** The time a worker gets in addition to the task timeout before it is considered hung. */
+    private static final long GRACE_MILLIS = 10000;
+    /** Put into the line queue of a worker when its output ended; compared by identity. */
+    private static final String EOF = new String("EOF");
+
+    private final int _workers;
+    private final long _timeoutMillis;
+    private final TaskSupervisor.Budget _budget;
+    private final List<String> _jvmOptions;
+    private Path _cacheDirectory;
+    private long _cacheSize;
+
+    private List<ConcurrentLinkedDeque<WorkUnit>> _queues;
+    private TaskResult[] _results;
+
+    /**
+     * Creates a new grading coordinator
+     *
+     * @param workers
+     *            The number of worker processes
+     * @param timeoutMillis
+     *            The wall time in milliseconds after which a task is abandoned
+     * @param budget
+     *            The budget of every task, which the workers enforce
+     * @param jvmOptions
+     *            Additional options for the worker JVMs, e.g. a maximum heap size
+     */
+    public GradingCoordinator(int workers, long timeoutMillis, TaskSupervisor.Budget budget, List<String> jvmOptions) {
+        if (workers < 1) throw new IllegalArgumentException("There must be at least one worker.");
+        if (timeoutMillis < 1) throw new IllegalArgumentException("The timeout must be positive.");
+        this._workers = workers;
+        this._timeoutMillis = timeoutMillis;
+        this._budget = budget;
+        this._jvmOptions = new ArrayList<>(jvmOptions);
+    }
+
+    /**
+     * Makes the workers share a {@link ResultCache}. Must be called before the tasks are run.
+     *
+     * @param directory
+     *            The directory of the cache or null to always run the tasks
+     * @param maxBytes
+     *            The maximum size of the cache in bytes
+     */
+    public void setResultCache(Path directory, long maxBytes) {
+        this._cacheDirectory = directory;
+        this._cacheSize = maxBytes;
+    }
+
+    /**
+     * Runs the given tasks, which are loaded from the class path by the workers.
+     *
+     * @param tasks
+     *            The task classes to run
+     * @return The results in the same order as the tasks
+     * @throws InterruptedException
+     *             When the current thread is interrupted while waiting for the workers
+     */
+    public List<TaskResult> run(List<Class<? extends TaskTemplate>> tasks) throws InterruptedException {
+        List<WorkUnit> units = new ArrayList<>(tasks.size());
+        for (Class<? extends TaskTemplate> task : tasks) {
+            units.add(new WorkUnit(units.size(), null, task.getName()));
+        }
+        return this.runUnits(units);
+    }
+
+    /**
+     * Runs the tasks of the given submissions. Each task runs in a {@link TaskHost} of its own in one of the workers.
+     *
+     * @param submissions
+     *            The class paths of the submissions; class directories or jar files
+     * @return The results of all tasks grouped by submission in the same order as the submissions
+     * @throws InterruptedException
+     *             When the current thread is interrupted while waiting for the workers
+     */
+    public List<TaskResult> runSubmissions(List<Path> submissions) throws InterruptedException {
+        List<WorkUnit> units = new ArrayList<>();
+        List<TaskResult> failed = new ArrayList<>();
+        List<Integer> failedAt = new ArrayList<>(); // the number of units of the submissions before each failed one
+        for (Path submission : submissions) {
+            // only loads the classes without initializing them, so no code of the submission runs here
+            try (TaskHost host = new TaskHost(submission.toUri().toURL())) {
+                for (Class<? extends TaskTemplate> task : host.tasks()) {
+                    units.add(new WorkUnit(units.size(), submission, task.getName()));
+                }
+            } catch (IOException | LinkageError e) {
+                failed.add(new TaskResult(submission.getFileName().toString(), null, TaskResult.Status.ERROR,
+                        e.toString(), 0, 0, 0));
+                failedAt.add(units.size());
+            }
+        }
+        List<TaskResult> results = this.runUnits(units);
+        for (int i = 0; i < failed.size(); ++i) {
+            results.add(failedAt.get(i) + i, failed.get(i)); // after the results of the failed submissions before it
+        }
+        return results;
+    }
+
+    private synchronized List<TaskResult> runUnits(List<WorkUnit> units) throws InterruptedException {
+        this._results = new TaskResult[units.size()];
+        this._queues = new ArrayList<>(this._workers);
+        for (int i = 0; i < this._workers; ++i) {
+            this._queues.add(new ConcurrentLinkedDeque<>());
+        }
+        for (WorkUnit unit : units) {
+            this._queues.get(unit.index % this._workers).add(unit);
+        }
+
+        List<Thread> threads = new ArrayList<>(this._workers);
+        for (int i = 0; i < Math.min(this._workers, units.size()); ++i) {
+            Thread thread = new Thread(new Worker(i), "grading-coordinator-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new ArrayList<>(Arrays.asList(this._results));
+    }
+
+    /**
+     * Takes the next unit for the given worker: the first one of its own queue or the last one of another queue.
+     */
+    private WorkUnit next(int worker) {
+        WorkUnit unit = this._queues.get(worker).pollFirst();
+        for (int i = 1; (unit == null) && (i < this._workers); ++i) {
+            unit = this._queues.get((worker + i) % this._workers).pollLast();
+        }
+        return unit;
+    }
+
+    /**
+     * A single task to run
+     */
+    private static class WorkUnit {
+        final int index;
+        final Path submission;
+        final String task;
+
+        WorkUnit(int index, Path submission, String task) {
+            this.index = index;
+            this.submission = submission;
+            this.task = task;
+        }
+
+        String submissionName() {
+            return this.submission == null ? null : this.submission.getFileName().toString();
+        }
+    }
+
+    /**
+     * Feeds one worker process with units and restarts it when it fails
+     */
+    private class Worker implements Runnable {
+        private final int _index;
+        private Process _process;
+        private Writer _input;
+        private BlockingQueue<String> _lines;
+
+        Worker(int index) {
+            this._index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                WorkUnit unit;
+                while ((unit = GradingCoordinator.this.next(this._index)) != null) {
+                    GradingCoordinator.this._results[unit.index] = this.runUnit(unit);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                this.stop();
+            }
+        }
+
+        private TaskResult runUnit(WorkUnit unit) throws InterruptedException {
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(GradingCoordinator.this._timeoutMillis + GRACE_MILLIS);
+            String prefix = GradingWorker.RESULT + "\t" + unit.index + "\t";
+            String line;
+            try {
+                if (this._process == null) {
+                    this.start();
+                }
+                String submission = unit.submission == null ? GradingWorker.CLASS_PATH : unit.submission.toString();
+                this._input.write(GradingWorker.RUN + "\t" + unit.index + "\t" + TaskResult.escape(submission) + "\t"
+                        + TaskResult.escape(unit.task) + "\n");
+                this._input.flush();
+                do {
+                    line = this._lines.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if ((line != null) && (line != EOF) && !line.startsWith(prefix)) {
+                        System.err.println(line); // the JVM itself may write to the standard output, e.g. when out of memory
+                        line = "";
+                    }
+                } while ("".equals(line));
+            } catch (IOException e) {
+                line = EOF;
+            }
+            long wallTime = (System.nanoTime() - start) / 1000000;
+
+            if (line == null) {
+                this.stop();
+                return new TaskResult(unit.submissionName(), unit.task, TaskResult.Status.TIMEOUT,
+                        "The worker did not answer in time.", 0, 0, wallTime);
+            }
+            if (line == EOF) {
+                String message = "The worker died" + (this._process.waitFor(1, TimeUnit.SECONDS)
+                        ? " with exit code " + this._process.exitValue() + "." : ".");
+                this.stop();
+                return new TaskResult(unit.submissionName(), unit.task, TaskResult.Status.ERROR, message, 0, 0, wallTime);
+            }
+
+            TaskResult result = TaskResult.decode(line.substring(prefix.length()));
+            if (result.status == TaskResult.Status.TIMEOUT) {
+                this.stop(); // the abandoned task may still be running in the worker
+            }
+            return result;
+        }
+
+        private void start() throws IOException {
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.add("-XX:+ExitOnOutOfMemoryError");
+            command.addAll(GradingCoordinator.this._jvmOptions);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(GradingWorker.class.getName());
+            command.add(String.valueOf(GradingCoordinator.this._timeoutMillis));
+            command.add(String.valueOf(GradingCoordinator.this._budget.maxTicks));
+            command.add(String.valueOf(GradingCoordinator.this._budget.maxCpuMillis));
+            command.add(String.valueOf(GradingCoordinator.this._budget.busyLoopMillis));
+            if (GradingCoordinator.this._cacheDirectory != null) {
+                command.add(GradingCoordinator.this._cacheDirectory.toAbsolutePath().toString());
+                command.add(String.valueOf(GradingCoordinator.this._cacheSize));
+            }
+
+            Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+            Thread reader = new Thread(() -> {
+                try (BufferedReader in = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        lines.add(line);
+                    }
+                } catch (IOException e) {
+                    // the worker is gone
+                }
+                lines.add(EOF);
+            }, "grading-worker-output-" + this._index);
+            reader.setDaemon(true);
+            reader.start();
+
+            this._process = process;
+            this._input = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+            this._lines = lines;
+        }
+
+        private void stop() {
+            if (this._process == null) return;
+            try {
+                this._input.close();
+            } catch (IOException e) {
+                // the worker is gone already
+            }
+            this._process.destroyForcibly();
+            try {
+                this._process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this._process = null;
+        }
+    }
+
+    /**
+     * Runs all tasks in worker processes and writes a JSON report.
+     * <p>
+     * Arguments:
+     * <ul>
+     * <li>{@code --workers <n>}: the number of worker processes; defaults to the number of processors</li>
+     * <li>{@code --timeout <ms>}: the wall time per task; defaults to 60000</li>
+     * <li>{@code --max-ticks <n>}: the maximum number of simulation ticks per task; defaults to 0, i.e. unlimited</li>
+     * <li>{@code --max-cpu <ms>}: the maximum CPU time per task; defaults to 0, i.e. unlimited</li>
+     * <li>{@code --busy-loop <ms>}: the time a task may keep the CPU busy without any entity acting; defaults to
+     * {@link TaskSupervisor#BUSY_LOOP_MILLIS}, 0 disables the detection</li>
+     * <li>{@code --memory <size>}: the maximum heap size of each worker, e.g. {@code 512m}</li>
+     * <li>{@code --jvm-option <option>}: an additional option for the worker JVMs; may be repeated</li>
+     * <li>{@code --output <file>}: the file to write the report to; defaults to standard output</li>
+     * <li>{@code --submissions <dir>}: a directory containing one class directory or jar file per submission. Without
+     * it, the tasks on the class path are run.</li>
+     * <li>{@code --cache <dir>}: the directory of a {@link ResultCache} shared by the workers; without it, every task
+     * is run</li>
+     * <li>{@code --cache-size <MiB>}: the maximum size of the cache; defaults to 64</li>
+     * </ul>
+     * The process exits with status 1 if any task did not pass.
+     *
+     * @param args
+     *            The command line arguments
+     * @throws IOException
+     *             When the tasks can not be loaded or the report can not be written
+     * @throws InterruptedException
+     *             When the main thread is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int workers = Runtime.getRuntime().availableProcessors();
+        long timeoutMillis = 60000;
+        int maxTicks = 0;
+        long maxCpuMillis = 0;
+        long busyLoopMillis = TaskSupervisor.BUSY_LOOP_MILLIS;
+        List<String> jvmOptions = new ArrayList<>();
+        String output = null;
+        Path submissions = null;
+        Path cache = null;
+        long cacheSize = GradingRunner.DEFAULT_CACHE_SIZE;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--timeout":
+                    timeoutMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--max-ticks":
+                    maxTicks = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-cpu":
+                    maxCpuMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--busy-loop":
+                    busyLoopMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--memory":
+                    jvmOptions.add("-Xmx" + args[++i]);
+                    break;
+                case "--jvm-option":
+                    jvmOptions.add(args[++i]);
+                    break;
+                case "--output":
+                    output = args[++i];
+                    break;
+                case "--submissions":
+                    submissions = Paths.get(args[++i]);
+                    break;
+                case "--cache":
+                    cache = Paths.get(args[++i]);
+                    break;
+                case "--cache-size":
+                    cacheSize = Long.parseLong(args[++i]) << 20;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        GradingCoordinator coordinator = new GradingCoordinator(workers, timeoutMillis,
+                new TaskSupervisor.Budget(maxTicks, maxCpuMillis, 0, busyLoopMillis), jvmOptions);
+        coordinator.setResultCache(cache, cacheSize);
+        List<TaskResult> results;
+        if (submissions == null) {
+            List<Class<? extends TaskTemplate>> tasks = new ArrayList<>();
+            SolutionLoader.loadSolutions(tasks::add);
+            results = coordinator.run(tasks);
+        } else {
+            try (Stream<Path> paths = Files.list(submissions)) {
+                results = coordinator.runSubmissions(paths.sorted().map(Path::toAbsolutePath).collect(Collectors.toList()));
+            }
+        }
+        String report = GradingRunner.toJson(results);
+
+        if (output == null) {
+            System.out.print(report);
+            System.out.flush();
+        } else {
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(Paths.get(output)),
+                    StandardCharsets.UTF_8)) {
+                writer.write(report);
+            }
+        }
+        System.exit(GradingRunner.exitStatus(results));
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.grading;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import de.unistuttgart.informatik.fius.icge.SolutionLoader;
+import de.unistuttgart.informatik.fius.icge.TaskSupervisor;
+import de.unistuttgart.informatik.fius.icge.course.TaskTemplate;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationCancelled;
+
+/**
+ * Runs the tests of tasks without a user interface.
+ * <p>
+ * Every task runs in fast-forward mode, so it takes as long as its entities need to act and not as long as the timer
+ * would take. The tasks are run in parallel with at most one task per worker and each task is given a fixed amount of
+ * wall time.
+ * <p>
+ * Like the engine, the runner calls {@link TaskTemplate#test()} of each task, which is responsible for running the
+ * solution. Tasks can either be taken from the class path or from separate submissions, each of which is loaded in
+ * its own {@link TaskHost}.
+ */
+public class GradingRunner implements AutoCloseable {
+
+    /** The default maximum size of the result cache in bytes. */
+    static final long DEFAULT_CACHE_SIZE = 64L << 20;
+
+    private final int _workers;
+    private final long _timeoutMillis;
+    private final TaskSupervisor _supervisor;
+    private ResultCache _cache;
+
+    /**
+     * Creates a new grading runner
+     *
+     * @param workers
+     *            The maximum number of tasks run at the same time
+     * @param timeoutMillis
+     *            The wall time in milliseconds after which a task is abandoned
+     * @param budget
+     *            The budget of every task; a task that exceeds it is cancelled and reported as timed out
+     */
+    public GradingRunner(int workers, long timeoutMillis, TaskSupervisor.Budget budget) {
+        if (workers < 1) throw new IllegalArgumentException("There must be at least one worker.");
+        if (timeoutMillis < 1) throw new IllegalArgumentException("The timeout must be positive.");
+        this._workers = workers;
+        this._timeoutMillis = timeoutMillis;
+        this._supervisor = new TaskSupervisor(budget);
+    }
+
+    /**
+     * Stops supervising the tasks. Tasks which timed out and are still running are not stopped.
+     */
+    @Override
+    public void close() {
+        this._supervisor.shutdown();
+    }
+
+    /**
+     * Sets the cache to look up results in before running a task and to store the results in afterwards.
+     *
+     * @param cache
+     *            The cache or null to always run the tasks
+     */
+    public void setResultCache(ResultCache cache) {
+        this._cache = cache;
+    }
+
+    /**
+     * Runs the given tasks.
+     *
+     * @param tasks
+     *            The task classes to run
+     * @return The results in the same order as the tasks
+     * @throws InterruptedException
+     *             When the current thread is interrupted while waiting for the tasks
+     */
+    public List<TaskResult> run(List<Class<? extends TaskTemplate>> tasks) throws InterruptedException {
+        ExecutorService pool = this.createPool();
+        try {
+            List<Future<TaskResult>> futures = new ArrayList<>(tasks.size());
+            for (Class<? extends TaskTemplate> task : tasks) {
+                futures.add(pool.submit(() -> this.runTask(null, task, task.getClassLoader())));
+            }
+            List<TaskResult> results = new ArrayList<>(tasks.size());
+            for (Future<TaskResult> future : futures) {
+                results.add(get(future));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the tasks of the given submissions. Every submission is loaded by its own {@link TaskHost}, which is closed
+     * once all its tasks are done.
+     *
+     * @param submissions
+     *            The class paths of the submissions; class directories or jar files
+     * @return The results of all tasks grouped by submission in the same order as the submissions
+     * @throws InterruptedException
+     *             When the current thread is interrupted while waiting for the tasks
+     */
+    public List<TaskResult> runSubmissions(List<Path> submissions) throws InterruptedException {
+        ExecutorService pool = this.createPool();
+        try {
+            List<Future<List<TaskResult>>> futures = new ArrayList<>(submissions.size());
+            for (Path submission : submissions) {
+                futures.add(pool.submit(() -> this.runSubmission(submission)));
+            }
+            List<TaskResult> results = new ArrayList<>();
+            for (Future<List<TaskResult>> future : futures) {
+                results.addAll(get(future));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<TaskResult> runSubmission(Path submission) throws InterruptedException {
+        String name = submission.getFileName().toString();
+        List<TaskResult> results = new ArrayList<>();
+        try (TaskHost host = new TaskHost(submission.toUri().toURL())) {
+            for (Class<? extends TaskTemplate> task : host.tasks()) {
+                results.add(this.runTask(name, task, host.classLoader()));
+            }
+        } catch (IOException e) {
+            results.add(new TaskResult(name, null, TaskResult.Status.ERROR, e.toString(), 0, 0, 0));
+        }
+        return results;
+    }
+
+    private ExecutorService createPool() {
+        return Executors.newFixedThreadPool(this._workers, r -> {
+            Thread thread = new Thread(r, "grading-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static <T> T get(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Grading a task failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Runs a single task given by its name. Used by the worker processes of the {@link GradingCoordinator}.
+     *
+     * @param submission
+     *            The class path of the submission containing the task or null to load the task from the class path
+     * @param taskName
+     *            The binary name of the task class
+     * @return The result of the task
+     * @throws InterruptedException
+     *             When the current thread is interrupted while waiting for the task
+     */
+    TaskResult runOne(Path submission, String taskName) throws InterruptedException {
+        String name = submission == null ? null : submission.getFileName().toString();
+        try {
+            if (submission == null) {
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                return this.runTask(null, loadTask(taskName, loader), loader);
+            }
+            try (TaskHost host = new TaskHost(submission.toUri().toURL())) {
+                return this.runTask(name, loadTask(taskName, host.classLoader()), host.classLoader());
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            return new TaskResult(name, taskName, TaskResult.Status.ERROR, e.toString(), 0, 0, 0);
+        }
+    }
+
+    private static Class<? extends TaskTemplate> loadTask(String taskName, ClassLoader loader)
+            throws ClassNotFoundException {
+        return Class.forName(taskName, false, loader).asSubclass(TaskTemplate.class);
+    }
+
+    /**
+     * Runs a single task on its own thread and waits for it at most the configured timeout.
+     * <p>
+     * A task that does not finish in time is interrupted, cancelled and left behind, so that the worker can continue with
+     * the next task. The supervisor lowers the priority of such a thread if it keeps running.
+     */
+    private TaskResult runTask(String submission, Class<? extends TaskTemplate> task, ClassLoader loader)
+            throws InterruptedException {
+        TaskResult[] result = new TaskResult[1];
+        Simulation[] sim = new Simulation[1];
+        long start = System.nanoTime();
+
+        Thread thread = new Thread(() -> {
+            try {
+                TaskTemplate obj;
+                try {
+                    obj = task.getDeclaredConstructor().newInstance();
+                } catch (InvocationTargetException e) {
+                    result[0] = this.result(submission, task, TaskResult.Status.ERROR, e.getCause().toString(), null,
+                            start);
+                    return;
+                } catch (ReflectiveOperationException e) {
+                    result[0] = this.result(submission, task, TaskResult.Status.ERROR,
+                            "Cannot create the task: " + e, null, start);
+                    return;
+                }
+                String key = this._cache == null ? null : this._cache.key(task, obj.getSimulation().territory());
+                TaskResult cached = key == null ? null : this._cache.get(key);
+                if (cached != null) {
+                    result[0] = new TaskResult(submission, cached.task, cached.status, cached.message, cached.ticks,
+                            cached.actions, cached.wallTimeMillis);
+                    return;
+                }
+                synchronized (sim) {
+                    sim[0] = obj.getSimulation();
+                }
+                sim[0].setFastForward(true);
+                TaskSupervisor.Task supervised = this._supervisor.supervise(sim[0]);
+                try {
+                    obj.test();
+                    result[0] = this.result(submission, task, TaskResult.Status.PASSED, null, sim[0], start);
+                } catch (AssertionError e) {
+                    result[0] = this.result(submission, task, TaskResult.Status.FAILED, e.getMessage(), sim[0], start);
+                } catch (SimulationCancelled e) {
+                    result[0] = this.result(submission, task, TaskResult.Status.TIMEOUT, e.getMessage(), sim[0], start);
+                } finally {
+                    supervised.close();
+                }
+                if (key != null) {
+                    this._cache.put(key, result[0]);
+                }
+            } catch (Throwable e) {
+                result[0] = this.result(submission, task, TaskResult.Status.ERROR, e.toString(), sim[0], start);
+            }
+        }, "grading-" + task.getSimpleName());
+        thread.setContextClassLoader(loader);
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(this._timeoutMillis);
+
+        if (thread.isAlive()) {
+            String message = "No result after " + this._timeoutMillis + " ms.";
+            thread.interrupt();
+            synchronized (sim) {
+                if (sim[0] != null) {
+                    sim[0].cancel(message); // stops the thread at its next call into the simulation
+                }
+                return this.result(submission, task, TaskResult.Status.TIMEOUT, message, sim[0], start);
+            }
+        }
+        return result[0];
+    }
+
+    private TaskResult result(String submission, Class<?> task, TaskResult.Status status, String message, Simulation sim,
+            long start) {
+        int ticks = sim == null ? 0 : sim.tickCount();
+        int actions = sim == null ? 0 : sim.actionCount();
+        long wallTime = (System.nanoTime() - start) / 1000000;
+        return new TaskResult(submission, task.getName(), status, message, ticks, actions, wallTime);
+    }
+
+    /**
+     * Creates a JSON report of the given results.
+     *
+     * @param results
+     *            The results to report
+     * @return The report as a JSON object
+     */
+    public static String toJson(List<TaskResult> results) {
+        int passed = 0;
+        StringBuilder sb = new StringBuilder("{\"results\":[");
+        for (int i = 0; i < results.size(); ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("\n").append(results.get(i).toJson());
+            if (results.get(i).status == TaskResult.Status.PASSED) {
+                ++passed;
+            }
+        }
+        sb.append("\n],\"total\":").append(results.size()).append(",\"passed\":").append(passed).append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Runs all tasks found by the {@link SolutionLoader} and writes a JSON report.
+     * <p>
+     * Arguments:
+     * <ul>
+     * <li>{@code --workers <n>}: the number of tasks run at the same time; defaults to the number of processors</li>
+     * <li>{@code --timeout <ms>}: the wall time per task; defaults to 60000</li>
+     * <li>{@code --max-ticks <n>}: the maximum number of simulation ticks per task; defaults to 0, i.e. unlimited</li>
+     * <li>{@code --max-cpu <ms>}: the maximum CPU time per task; defaults to 0, i.e. unlimited</li>
+     * <li>{@code --busy-loop <ms>}: the time a task may keep the CPU busy without any entity acting; defaults to
+     * {@link TaskSupervisor#BUSY_LOOP_MILLIS}, 0 disables the detection</li>
+     * <li>{@code --output <file>}: the file to write the report to; defaults to standard output</li>
+     * <li>{@code --submissions <dir>}: a directory containing one class directory or jar file per submission; every
+     * submission is run in its own {@link TaskHost}. Without it, the tasks on the class path are run.</li>
+     * <li>{@code --cache <dir>}: the directory of a {@link ResultCache}; without it, every task is run</li>
+     * <li>{@code --cache-size <MiB>}: the maximum size of the cache; defaults to 64</li>
+     * </ul>
+     * The process exits with status 1 if any task did not pass.
+     *
+     * @param args
+     *            The command line arguments
+     * @throws IOException
+     *             When the tasks can not be loaded or the report can not be written
+     * @throws InterruptedException
+     *             When the main thread is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int workers = Runtime.getRuntime().availableProcessors();
+        long timeoutMillis = 60000;
+        int maxTicks = 0;
+        long maxCpuMillis = 0;
+        long busyLoopMillis = TaskSupervisor.BUSY_LOOP_MILLIS;
+        String output = null;
+        Path submissions = null;
+        Path cache = null;
+        long cacheSize = DEFAULT_CACHE_SIZE;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--timeout":
+                    timeoutMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--max-ticks":
+                    maxTicks = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-cpu":
+                    maxCpuMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--busy-loop":
+                    busyLoopMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--output":
+                    output = args[++i];
+                    break;
+                case "--submissions":
+                    submissions = Paths.get(args[++i]);
+                    break;
+                case "--cache":
+                    cache = Paths.get(args[++i]);
+                    break;
+                case "--cache-size":
+                    cacheSize = Long.parseLong(args[++i]) << 20;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        PrintStream out = System.out;
+        System.setOut(System.err); // keep the output of the tasks out of the report
+        List<TaskResult> results;
+        TaskSupervisor.Budget budget = new TaskSupervisor.Budget(maxTicks, maxCpuMillis, 0, busyLoopMillis);
+        try (GradingRunner runner = new GradingRunner(workers, timeoutMillis, budget)) {
+            if (cache != null) {
+                runner.setResultCache(new ResultCache(cache, cacheSize));
+            }
+            if (submissions == null) {
+                List<Class<? extends TaskTemplate>> tasks = new ArrayList<>();
+                SolutionLoader.loadSolutions(tasks::add);
+                results = runner.run(tasks);
+            } else {
+                try (Stream<Path> paths = Files.list(submissions)) {
+                    results = runner.runSubmissions(paths.sorted().collect(Collectors.toList()));
+                }
+            }
+        }
+        String report = toJson(results);
+
+        if (output == null) {
+            out.print(report);
+            out.flush();
+        } else {
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(Paths.get(output)), StandardCharsets.UTF_8)) {
+                writer.write(report);
+            }
+        }
+        System.exit(exitStatus(results)); // tasks that timed out may still be running
+    }
+
+    /**
+     * @param results
+     *            The results of a run
+     * @return 0 if all tasks passed and 1 otherwise
+     */
+    static int exitStatus(List<TaskResult> results) {
+        for (TaskResult result : results) {
+            if (result.status != TaskResult.Status.PASSED) return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.grading;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import de.unistuttgart.informatik.fius.icge.TaskSupervisor;
+
+/**
+ * The main class of the worker processes started by the {@link GradingCoordinator}.
+ * <p>
+ * A worker reads one request per line from its standard input and answers each with one line on its standard output:
+ * <ul>
+ * <li>{@code RUN <id> <submission> <task>} runs a task and answers {@code RESULT <id> <encoded result>}; the
+ * submission is {@code -} for tasks on the class path of the worker</li>
+ * </ul>
+ * All fields are separated by tabs and escaped like the fields of {@link TaskResult#encode()}. Everything the tasks
+ * print goes to the standard error stream instead. The worker exits when its standard input is closed.
+ */
+public class GradingWorker {
+    static final String RUN = "RUN";
+    static final String RESULT = "RESULT";
+    static final String CLASS_PATH = "-";
+
+    private GradingWorker() {
+        //hide constructor
+    }
+
+    /**
+     * Runs the worker.
+     *
+     * @param args
+     *            The timeout per task in milliseconds, the maximum ticks, the maximum CPU time in milliseconds and the
+     *            busy loop time in milliseconds of the {@link TaskSupervisor.Budget budget} of every task, optionally
+     *            followed by the directory and maximum size in bytes of a {@link ResultCache}
+     * @throws Exception
+     *             When the communication with the coordinator fails
+     */
+    public static void main(String[] args) throws Exception {
+        long timeoutMillis = Long.parseLong(args[0]);
+        TaskSupervisor.Budget budget = new TaskSupervisor.Budget(Integer.parseInt(args[1]), Long.parseLong(args[2]), 0,
+                Long.parseLong(args[3]));
+        PrintStream out = new PrintStream(System.out, false, "UTF-8");
+        System.setOut(System.err); // the standard output is reserved for the results
+
+        try (GradingRunner runner = new GradingRunner(1, timeoutMillis, budget)) {
+            if (args.length > 4) {
+                runner.setResultCache(new ResultCache(Paths.get(args[4]), Long.parseLong(args[5])));
+            }
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if ((fields.length != 4) || !fields[0].equals(RUN))
+                    throw new IllegalArgumentException("Unknown request: " + line);
+                String submission = TaskResult.unescape(fields[2]);
+                Path path = submission.equals(CLASS_PATH) ? null : Paths.get(submission);
+                TaskResult result = runner.runOne(path, TaskResult.unescape(fields[3]));
+                out.print(RESULT + "\t" + fields[1] + "\t" + result.encode() + "\n");
+                out.flush();
+            }
+        }
+        System.exit(0); // tasks that timed out may still be running
+    }
+}
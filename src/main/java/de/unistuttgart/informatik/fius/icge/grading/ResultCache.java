@@ -0,0 +1,356 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.grading;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import de.unistuttgart.informatik.fius.icge.course.TaskTemplate;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+
+/**
+ * An on-disk cache of task results.
+ * <p>
+ * A result is stored under a key made of the hash of all class files on the class path of the task class, the name of
+ * the task, the hash of the initial territory of the task and the hash of the engine classes. As long as none of them changes, the
+ * task does not have to be run again. Only results which passed or failed are stored; errors and timeouts may depend
+ * on the machine and are always run again.
+ * <p>
+ * Once the cache grows beyond its maximum size, the least recently used results are deleted. The cache can be shared by
+ * several processes. It is only an optimization, so failing to read or write it is treated like a missing result.
+ */
+public class ResultCache {
+    private static final String SUFFIX = ".result";
+    /** The share of the maximum size the cache is reduced to when it is full. */
+    private static final double LOW_WATER_MARK = 0.9;
+
+    private final Path _directory;
+    private final long _maxBytes;
+    private final AtomicLong _size = new AtomicLong();
+    private final ConcurrentHashMap<Path, String> _codeHashes = new ConcurrentHashMap<>();
+    private final String _engineVersion;
+
+    /**
+     * Creates a new result cache
+     *
+     * @param directory
+     *            The directory to store the results in; it is created if necessary
+     * @param maxBytes
+     *            The maximum size of all results in bytes
+     * @throws IOException
+     *             When the directory can not be created or read
+     */
+    public ResultCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes < 1) throw new IllegalArgumentException("The maximum size must be positive.");
+        this._directory = Files.createDirectories(directory);
+        this._maxBytes = maxBytes;
+        this._size.set(this.entries().stream().mapToLong(this::size).sum());
+        String engine = this.locationHash(TaskTemplate.class);
+        this._engineVersion = engine == null ? String.valueOf(TaskTemplate.class.getPackage().getImplementationVersion())
+                : engine;
+    }
+
+    /**
+     * Get the key of a task
+     * <p>
+     * The class files are hashed only once per location, so they must not change while the cache is used.
+     *
+     * @param task
+     *            The task class
+     * @param initialTerritory
+     *            The territory the task starts with
+     * @return The key or null if the class path of the task can not be hashed
+     */
+    public String key(Class<? extends TaskTemplate> task, Territory initialTerritory) {
+        String code = this.codeHash(task);
+        if (code == null) return null;
+        return hash(String.join("\n", this._engineVersion, code, task.getName(), initialTerritory.contentHash())
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the stored result for a key
+     *
+     * @param key
+     *            The key returned by {@link #key(Class, Territory)}
+     * @return The result or null if there is none
+     */
+    public TaskResult get(String key) {
+        Path file = this._directory.resolve(key + SUFFIX);
+        try {
+            TaskResult result = TaskResult.decode(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            this.delete(file); // unreadable, e.g. written by an older version
+            return null;
+        }
+    }
+
+    /**
+     * Stores a result for a key. Results that neither passed nor failed are ignored.
+     *
+     * @param key
+     *            The key returned by {@link #key(Class, Territory)}
+     * @param result
+     *            The result to store
+     */
+    public void put(String key, TaskResult result) {
+        if ((result.status != TaskResult.Status.PASSED) && (result.status != TaskResult.Status.FAILED)) return;
+        byte[] data = result.encode().getBytes(StandardCharsets.UTF_8);
+        Path file = this._directory.resolve(key + SUFFIX);
+        long replaced;
+        try {
+            replaced = this.size(file); // 0 if there is no result yet
+            Path tmp = Files.createTempFile(this._directory, key, ".tmp");
+            try {
+                Files.write(tmp, data);
+                try {
+                    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            return;
+        }
+        if (this._size.addAndGet(data.length - replaced) > this._maxBytes) {
+            this.evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used results until the cache is below its low water mark. Other processes may have
+     * changed the directory, so its size is determined again.
+     */
+    private synchronized void evict() {
+        List<Path> entries = this.entries();
+        Map<Path, Long> times = new HashMap<>();
+        for (Path entry : entries) {
+            times.put(entry, this.lastModified(entry));
+        }
+        entries.sort(Comparator.comparingLong(times::get));
+
+        long size = entries.stream().mapToLong(this::size).sum();
+        long target = (long) (this._maxBytes * LOW_WATER_MARK);
+        for (Path entry : entries) {
+            if (size <= target) {
+                break;
+            }
+            size -= this.size(entry);
+            this.delete(entry);
+        }
+        this._size.set(size);
+    }
+
+    private List<Path> entries() {
+        try (Stream<Path> files = Files.list(this._directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).collect(Collectors.toList());
+        } catch (IOException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    private long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0; // deleted by another process
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // deleted or locked by another process
+        }
+    }
+
+    /**
+     * Get the hash of all class files the given class may use besides the engine and the JDK: the location the class was
+     * loaded from and every other directory or jar file on the class path of its class loader, in class path order.
+     *
+     * @return The hash or null if the class was not loaded from a directory or jar file or a location can not be hashed
+     */
+    private String codeHash(Class<?> cls) {
+        Path own = location(cls);
+        if (own == null) return null;
+        List<Path> locations = classPath(cls.getClassLoader());
+        if (!locations.contains(own)) {
+            locations.add(0, own);
+        }
+        MessageDigest digest = sha256();
+        for (Path location : locations) {
+            if (!location.equals(own) && !Files.exists(location)) {
+                continue; // class paths often name missing directories
+            }
+            String hash = this._codeHashes.computeIfAbsent(location, ResultCache::hashClassFiles);
+            if (hash == null) return null;
+            digest.update(location.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(hash.getBytes(StandardCharsets.UTF_8));
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Get the hash of all class files at the location the given class was loaded from.
+     *
+     * @return The hash or null if the class was not loaded from a directory or jar file
+     */
+    private String locationHash(Class<?> cls) {
+        Path location = location(cls);
+        return location == null ? null : this._codeHashes.computeIfAbsent(location, ResultCache::hashClassFiles);
+    }
+
+    private static Path location(Class<?> cls) {
+        CodeSource source = cls.getProtectionDomain().getCodeSource();
+        return source == null ? null : path(source.getLocation());
+    }
+
+    private static Path path(URL url) {
+        if ((url == null) || !url.getProtocol().equals("file")) return null;
+        try {
+            return Paths.get(url.toURI()).toAbsolutePath();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the directories and jar files a class loader loads classes from itself, not counting its parents. The class
+     * path of the system class loader is taken from the {@code java.class.path} property.
+     */
+    private static List<Path> classPath(ClassLoader loader) {
+        List<Path> locations = new ArrayList<>();
+        if (loader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) loader).getURLs()) {
+                Path location = path(url);
+                if (location != null) {
+                    locations.add(location);
+                }
+            }
+        } else if (loader == ClassLoader.getSystemClassLoader()) {
+            for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                if (!entry.isEmpty()) {
+                    try {
+                        locations.add(Paths.get(entry).toAbsolutePath());
+                    } catch (IllegalArgumentException e) {
+                        // not a path of this file system
+                    }
+                }
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Hashes the names and contents of all class files in a directory or jar file in the order of their names.
+     *
+     * @return The hash or null if the location can not be read
+     */
+    private static String hashClassFiles(Path location) {
+        MessageDigest digest = sha256();
+        try {
+            if (Files.isDirectory(location)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(location)) {
+                    files = walk.filter(file -> file.toString().endsWith(".class")).collect(Collectors.toList());
+                }
+                files.sort(Comparator.comparing(file -> location.relativize(file).toString().replace('\\', '/')));
+                for (Path file : files) {
+                    digest.update(location.relativize(file).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(file));
+                }
+            } else {
+                try (JarFile jar = new JarFile(location.toFile())) {
+                    List<JarEntry> entries = new ArrayList<>();
+                    for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements();) {
+                        JarEntry entry = e.nextElement();
+                        if (entry.getName().endsWith(".class")) {
+                            entries.add(entry);
+                        }
+                    }
+                    entries.sort(Comparator.comparing(JarEntry::getName));
+                    byte[] buffer = new byte[8192];
+                    for (JarEntry entry : entries) {
+                        digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            int read;
+                            while ((read = in.read(buffer)) > 0) {
+                                digest.update(buffer, 0, read);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return hex(digest.digest());
+    }
+
+    private static String hash(byte[] data) {
+        return hex(sha256().digest(data));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java platform has to support SHA-256
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.grading;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.unistuttgart.informatik.fius.icge.SolutionLoader;
+import de.unistuttgart.informatik.fius.icge.course.TaskTemplate;
+
+/**
+ * Hosts the tasks of a single submission in their own class loader.
+ * <p>
+ * The classes of the {@link #ENGINE_PACKAGES engine packages} are shared with the class loader of the host, everything
+ * else is loaded from the class path of the submission first. Different submissions can therefore contain classes of
+ * the same name and run side by side. When the host is closed and no simulation of it is referenced anymore, all
+ * classes of the submission can be unloaded.
+ * <p>
+ * Since the engine classes are shared, so is their static state: the listeners of the {@link
+ * de.unistuttgart.informatik.fius.icge.event.EventDispatcher EventDispatcher} see the events of all hosts and have to
+ * check the simulation of an event.
+ */
+public class TaskHost implements AutoCloseable {
+    /** The packages whose classes are shared between the engine and the submissions; subpackages are not included. */
+    public static final Set<String> ENGINE_PACKAGES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "de.unistuttgart.informatik.fius.icge",
+            "de.unistuttgart.informatik.fius.icge.animations",
+            "de.unistuttgart.informatik.fius.icge.course",
+            "de.unistuttgart.informatik.fius.icge.event",
+            "de.unistuttgart.informatik.fius.icge.grading",
+            "de.unistuttgart.informatik.fius.icge.processing",
+            "de.unistuttgart.informatik.fius.icge.simulation",
+            "de.unistuttgart.informatik.fius.icge.simulation.inspection",
+            "de.unistuttgart.informatik.fius.icge.simulation.journal",
+            "de.unistuttgart.informatik.fius.icge.territory",
+            "de.unistuttgart.informatik.fius.icge.workbench",
+            "de.unistuttgart.informatik.fius.icge.workbench.swing",
+            "de.unistuttgart.informatik.fius.icge.workbench.tools")));
+
+    private final SubmissionClassLoader _loader;
+
+    /**
+     * Creates a new task host on top of the engine classes of this class loader
+     *
+     * @param classPath
+     *            The class path of the submission
+     */
+    public TaskHost(URL... classPath) {
+        this(TaskHost.class.getClassLoader(), classPath);
+    }
+
+    /**
+     * Creates a new task host
+     *
+     * @param engineLoader
+     *            The class loader to take the engine classes from
+     * @param classPath
+     *            The class path of the submission
+     */
+    public TaskHost(ClassLoader engineLoader, URL... classPath) {
+        this._loader = new SubmissionClassLoader(classPath, engineLoader);
+    }
+
+    /**
+     * @return The class loader of the submission
+     */
+    public ClassLoader classLoader() {
+        return this._loader;
+    }
+
+    /**
+     * Get all tasks of the submission
+     *
+     * @return The task classes sorted by their simple names
+     * @throws IOException
+     *             When the class path of the submission can not be read
+     */
+    public List<Class<? extends TaskTemplate>> tasks() throws IOException {
+        List<Class<? extends TaskTemplate>> tasks = new ArrayList<>();
+        SolutionLoader.loadSolutions(this._loader, tasks::add);
+        return tasks;
+    }
+
+    /**
+     * Closes the class loader of the submission. Classes that were not loaded yet can not be loaded afterwards.
+     *
+     * @throws IOException
+     *             When a file of the class path can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this._loader.close();
+    }
+
+    /**
+     * Checks whether a class belongs to one of the {@link #ENGINE_PACKAGES}
+     *
+     * @param name
+     *            The binary name of the class
+     * @return Whether the class is an engine class
+     */
+    public static boolean isEngineClass(String name) {
+        int end = name.lastIndexOf('.');
+        return (end > 0) && ENGINE_PACKAGES.contains(name.substring(0, end));
+    }
+
+    /**
+     * A class loader which loads the engine classes from its parent and all other classes from its own class path first.
+     * A submission class that has the name of an engine class is ignored with a warning.
+     */
+    private static class SubmissionClassLoader extends URLClassLoader {
+        static {
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        /** The engine classes already checked for a class of the same name in the submission. */
+        private final Set<String> _checked = ConcurrentHashMap.newKeySet();
+
+        SubmissionClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith("java.")) return super.loadClass(name, resolve);
+            if (isEngineClass(name)) {
+                try {
+                    Class<?> cls = super.loadClass(name, resolve);
+                    if (this._checked.add(name) && (this.findResource(name.replace('.', '/') + ".class") != null)) {
+                        System.err.println("Ignoring " + name + " of the submission, the engine class is used instead.");
+                    }
+                    return cls;
+                } catch (ClassNotFoundException e) {
+                    // a class of the submission in an engine package
+                }
+            }
+            synchronized (this.getClassLoadingLock(name)) {
+                Class<?> cls = this.findLoadedClass(name);
+                if (cls == null) {
+                    try {
+                        cls = this.findClass(name);
+                    } catch (ClassNotFoundException e) {
+                        return super.loadClass(name, resolve);
+                    }
+                }
+                if (resolve) {
+                    this.resolveClass(cls);
+                }
+                return cls;
+            }
+        }
+
+        @Override
+        public URL getResource(String name) {
+            URL url = this.findResource(name);
+            return url != null ? url : super.getResource(name);
+        }
+
+        /**
+         * Only the resources of the submission itself, so that indexes and scans do not pick up the classes of the host.
+         */
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            return this.findResources(name);
+        }
+    }
+}
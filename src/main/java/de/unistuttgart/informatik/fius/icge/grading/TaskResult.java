@@ -0,0 +1,197 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.grading;
+
+/**
+ * The result of grading a single task
+ */
+public class TaskResult {
+
+    /**
+     * The outcome of a graded task
+     */
+    public enum Status {
+        /** The test of the task completed without failure. */
+        PASSED,
+        /** The test of the task failed with an assertion error. */
+        FAILED,
+        /** The task could not be created or its test threw an exception. */
+        ERROR,
+        /** The test of the task did not complete in time. */
+        TIMEOUT
+    }
+
+    /** The name of the submission the task belongs to or null if it was loaded from the class path. */
+    public final String submission;
+    /** The binary name of the task class or null if the tasks of the submission could not be loaded. */
+    public final String task;
+    /** The outcome of the task. */
+    public final Status status;
+    /** The message of the failure or error or null. */
+    public final String message;
+    /** The number of simulation ticks the task used. */
+    public final int ticks;
+    /** The number of entity actions performed by the task. */
+    public final int actions;
+    /** The wall clock time the task took in milliseconds. */
+    public final long wallTimeMillis;
+
+    /**
+     * Creates a new task result
+     *
+     * @param task
+     *            The binary name of the task class
+     * @param status
+     *            The outcome of the task
+     * @param message
+     *            The message of the failure or error or null
+     * @param ticks
+     *            The number of simulation ticks the task used
+     * @param actions
+     *            The number of entity actions performed by the task
+     * @param wallTimeMillis
+     *            The wall clock time the task took in milliseconds
+     */
+    public TaskResult(String task, Status status, String message, int ticks, int actions, long wallTimeMillis) {
+        this(null, task, status, message, ticks, actions, wallTimeMillis);
+    }
+
+    /**
+     * Creates a new task result for a task of a submission
+     *
+     * @param submission
+     *            The name of the submission the task belongs to
+     * @param task
+     *            The binary name of the task class or null if the tasks of the submission could not be loaded
+     * @param status
+     *            The outcome of the task
+     * @param message
+     *            The message of the failure or error or null
+     * @param ticks
+     *            The number of simulation ticks the task used
+     * @param actions
+     *            The number of entity actions performed by the task
+     * @param wallTimeMillis
+     *            The wall clock time the task took in milliseconds
+     */
+    public TaskResult(String submission, String task, Status status, String message, int ticks, int actions,
+            long wallTimeMillis) {
+        this.submission = submission;
+        this.task = task;
+        this.status = status;
+        this.message = message;
+        this.ticks = ticks;
+        this.actions = actions;
+        this.wallTimeMillis = wallTimeMillis;
+    }
+
+    /**
+     * @return This result as a JSON object
+     */
+    public String toJson() {
+        return "{\"submission\":" + quote(this.submission) + ",\"task\":" + quote(this.task) + ",\"status\":"
+                + quote(this.status.name()) + ",\"message\":" + quote(this.message) + ",\"ticks\":" + this.ticks
+                + ",\"actions\":" + this.actions + ",\"wallTimeMillis\":" + this.wallTimeMillis + "}";
+    }
+
+    /**
+     * Encodes this result as a single line of tab separated fields, which can be read by {@link #decode(String)}.
+     *
+     * @return The encoded result
+     */
+    public String encode() {
+        return String.join("\t", escape(this.submission), escape(this.task), this.status.name(), escape(this.message),
+                String.valueOf(this.ticks), String.valueOf(this.actions), String.valueOf(this.wallTimeMillis));
+    }
+
+    /**
+     * Decodes a result encoded by {@link #encode()}.
+     *
+     * @param line
+     *            The encoded result
+     * @return The result
+     * @throws IllegalArgumentException
+     *             When the line is not an encoded result
+     */
+    public static TaskResult decode(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 7) throw new IllegalArgumentException("Not an encoded task result: " + line);
+        return new TaskResult(unescape(fields[0]), unescape(fields[1]), Status.valueOf(fields[2]), unescape(fields[3]),
+                Integer.parseInt(fields[4]), Integer.parseInt(fields[5]), Long.parseLong(fields[6]));
+    }
+
+    /**
+     * Escapes a string, so that it does not contain tabs or line breaks anymore. null is encoded as well.
+     *
+     * @param str
+     *            The string to escape or null
+     * @return The escaped string
+     */
+    static String escape(String str) {
+        if (str == null) return "\\0";
+        return str.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    /**
+     * Reverts {@link #escape(String)}.
+     *
+     * @param str
+     *            The escaped string
+     * @return The original string or null
+     */
+    static String unescape(String str) {
+        if (str.equals("\\0")) return null;
+        StringBuilder sb = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); ++i) {
+            char c = str.charAt(i);
+            if ((c == '\\') && ((i + 1) < str.length())) {
+                char next = str.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.toJson();
+    }
+
+    private static String quote(String str) {
+        if (str == null) return "null";
+        StringBuilder sb = new StringBuilder(str.length() + 2).append('"');
+        for (char c : str.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
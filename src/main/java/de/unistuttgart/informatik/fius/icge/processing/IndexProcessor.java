@@ -0,0 +1,127 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.processing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import de.unistuttgart.informatik.fius.icge.ClassIndex;
+import de.unistuttgart.informatik.fius.icge.course.TaskTemplate;
+import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionAttribute;
+
+/**
+ * An annotation processor which writes the index of all task classes read by {@link ClassIndex}, so the engine does not
+ * have to scan the class path for solutions at startup.
+ * <p>
+ * It also checks at compile time that methods annotated with {@link InspectionAttribute} are getters or setters, which
+ * would otherwise only fail when the entity is inspected.
+ * <p>
+ * The processor is registered as a service, so javac runs it automatically for every project that has the engine on its
+ * class path.
+ */
+@SupportedAnnotationTypes("*")
+public class IndexProcessor extends AbstractProcessor {
+
+    private final Set<String> _tasks = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            this.writeIndex(ClassIndex.TASK_INDEX, this._tasks);
+            return false;
+        }
+
+        TypeElement taskTemplate = this.processingEnv.getElementUtils().getTypeElement(TaskTemplate.class.getCanonicalName());
+        if (taskTemplate != null) {
+            for (Element element : roundEnv.getRootElements()) {
+                this.findTasks(element, taskTemplate);
+            }
+        }
+
+        TypeElement attribute = this.processingEnv.getElementUtils()
+                .getTypeElement(InspectionAttribute.class.getCanonicalName());
+        if (attribute != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(attribute)) {
+                if (element.getKind() == ElementKind.METHOD) {
+                    this.checkAttributeMethod((ExecutableElement) element);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void findTasks(Element element, TypeElement taskTemplate) {
+        if (element.getKind() != ElementKind.CLASS) return;
+        TypeElement type = (TypeElement) element;
+        if (!type.getModifiers().contains(Modifier.ABSTRACT) && this.processingEnv.getTypeUtils()
+                .isSubtype(this.processingEnv.getTypeUtils().erasure(type.asType()), taskTemplate.asType())) {
+            this._tasks.add(this.processingEnv.getElementUtils().getBinaryName(type).toString());
+        }
+        for (Element enclosed : type.getEnclosedElements()) {
+            this.findTasks(enclosed, taskTemplate);
+        }
+    }
+
+    private void checkAttributeMethod(ExecutableElement method) {
+        int parameters = method.getParameters().size();
+        boolean returnsVoid = method.getReturnType().getKind() == TypeKind.VOID;
+        if (((parameters == 0) && !returnsVoid) || ((parameters == 1) && returnsVoid)) return;
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Method is neither a getter nor a setter! : " + method.getSimpleName(), method);
+    }
+
+    private void writeIndex(String resource, Set<String> names) {
+        if (names.isEmpty()) return;
+        Set<String> all = new TreeSet<>(names);
+        try {
+            // keep the entries of classes that were not recompiled in an incremental build
+            FileObject existing = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", resource);
+            try (InputStream in = existing.openInputStream()) {
+                all.addAll(ClassIndex.readIndex(in));
+            }
+        } catch (IOException e) {
+            // no index yet
+        }
+        try {
+            FileObject file = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", resource);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String name : all) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write " + resource + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
+
+/**
+ * An index of occupied cells, which supports looking up the next occupied cell in a row or column.
+ * <p>
+ * Copies made by {@link #share()} share their content until one of them is changed. Even then, only the maps from rows
+ * and columns to their cells are copied; the cells of a single row or column are copied once that row or column is
+ * changed.
+ */
+class CellIndex {
+
+    /** The number of occupations per cell by row and column. */
+    private HashMap<Integer, TreeMap<Integer, Integer>> _columnsByRow = new HashMap<>();
+    private HashMap<Integer, TreeSet<Integer>> _rowsByColumn = new HashMap<>();
+    private boolean _shared = false;
+    /** The rows and columns whose cells belong to this index alone; null if all of them do. */
+    private HashSet<Integer> _ownRows, _ownColumns;
+
+    /**
+     * Get a copy of this index, which shares the content with this index until either of them is changed
+     *
+     * @return The copy
+     */
+    CellIndex share() {
+        CellIndex copy = new CellIndex();
+        copy._columnsByRow = this._columnsByRow;
+        copy._rowsByColumn = this._rowsByColumn;
+        copy._shared = true;
+        this._shared = true;
+        return copy;
+    }
+
+    /**
+     * Adds one occupation of the given cell
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     */
+    void add(int column, int row) {
+        this.unshare();
+        TreeMap<Integer, Integer> columns = this.ownRow(row);
+        Integer old = columns.get(column);
+        columns.put(column, old == null ? 1 : old + 1);
+        if (old != null) return;
+        this.ownColumn(column).add(row);
+    }
+
+    /**
+     * Removes one occupation of the given cell
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     */
+    void remove(int column, int row) {
+        if (!this.contains(column, row)) return;
+        this.unshare();
+        TreeMap<Integer, Integer> columns = this.ownRow(row);
+        int old = columns.get(column);
+        if (old > 1) {
+            columns.put(column, old - 1);
+            return;
+        }
+        columns.remove(column);
+        if (columns.isEmpty()) {
+            this._columnsByRow.remove(row);
+        }
+        TreeSet<Integer> rows = this.ownColumn(column);
+        rows.remove(row);
+        if (rows.isEmpty()) {
+            this._rowsByColumn.remove(column);
+        }
+    }
+
+    /**
+     * Removes all occupations
+     */
+    void clear() {
+        this._columnsByRow = new HashMap<>();
+        this._rowsByColumn = new HashMap<>();
+        this._shared = false;
+        this._ownRows = null;
+        this._ownColumns = null;
+    }
+
+    /**
+     * Checks whether the given cell is occupied
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return Whether the cell is occupied
+     */
+    boolean contains(int column, int row) {
+        TreeMap<Integer, Integer> columns = this._columnsByRow.get(row);
+        return (columns != null) && columns.containsKey(column);
+    }
+
+    /**
+     * Get the number of steps from the given cell to the next occupied cell in the given direction.
+     * <p>
+     * The given cell itself is not considered.
+     *
+     * @param column
+     *            The column of the cell to start at
+     * @param row
+     *            The row of the cell to start at
+     * @param dir
+     *            The direction to look in
+     * @return The number of steps or -1 if there is no occupied cell in that direction
+     */
+    int distance(int column, int row, Direction dir) {
+        TreeMap<Integer, Integer> columns;
+        TreeSet<Integer> rows;
+        Integer next;
+        switch (dir) {
+            case EAST:
+                columns = this._columnsByRow.get(row);
+                next = columns == null ? null : columns.higherKey(column);
+                return next == null ? -1 : next - column;
+            case WEST:
+                columns = this._columnsByRow.get(row);
+                next = columns == null ? null : columns.lowerKey(column);
+                return next == null ? -1 : column - next;
+            case SOUTH:
+                rows = this._rowsByColumn.get(column);
+                next = rows == null ? null : rows.higher(row);
+                return next == null ? -1 : next - row;
+            case NORTH:
+                rows = this._rowsByColumn.get(column);
+                next = rows == null ? null : rows.lower(row);
+                return next == null ? -1 : row - next;
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Copies the shared maps of rows and columns before they are changed. The cells of the rows and columns stay shared
+     * until {@link #ownRow(int)} or {@link #ownColumn(int)} copies them.
+     */
+    private void unshare() {
+        if (!this._shared) return;
+        this._columnsByRow = new HashMap<>(this._columnsByRow);
+        this._rowsByColumn = new HashMap<>(this._rowsByColumn);
+        this._ownRows = new HashSet<>();
+        this._ownColumns = new HashSet<>();
+        this._shared = false;
+    }
+
+    /**
+     * @return The cells of the given row, which may be changed; created if the row has none
+     */
+    private TreeMap<Integer, Integer> ownRow(int row) {
+        TreeMap<Integer, Integer> columns = this._columnsByRow.get(row);
+        boolean copy = (this._ownRows != null) && this._ownRows.add(row);
+        if (columns == null) {
+            columns = new TreeMap<>();
+        } else if (copy) {
+            columns = new TreeMap<>(columns);
+        } else {
+            return columns;
+        }
+        this._columnsByRow.put(row, columns);
+        return columns;
+    }
+
+    /**
+     * @return The cells of the given column, which may be changed; created if the column has none
+     */
+    private TreeSet<Integer> ownColumn(int column) {
+        TreeSet<Integer> rows = this._rowsByColumn.get(column);
+        boolean copy = (this._ownColumns != null) && this._ownColumns.add(column);
+        if (rows == null) {
+            rows = new TreeSet<>();
+        } else if (copy) {
+            rows = new TreeSet<>(rows);
+        } else {
+            return rows;
+        }
+        this._rowsByColumn.put(column, rows);
+        return rows;
+    }
+}
@@ -8,9 +8,11 @@
 package de.unistuttgart.informatik.fius.icge.simulation;
 
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
 import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
+import de.unistuttgart.informatik.fius.icge.event.EventListener;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.TickEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionAttribute;
@@ -23,6 +25,8 @@ import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
  * Base class for all entities
  */
 public abstract class Entity {
+    /** How often an entity waiting for a tick checks whether its task was cancelled. */
+    private static final long CHECKPOINT_MILLIS = 100;
 
     private final Simulation _sim;
     private int _delayTicks = 25;
@@ -261,6 +265,15 @@ public abstract class Entity {
         this._delayTicks = delay;
     }
 
+    /**
+     * Get the delay in ticks for actions performed by this entity
+     * 
+     * @return The amount of ticks
+     */
+    public int getDelay() {
+        return this._delayTicks;
+    }
+
     /**
      * reset delay to standard standard amount of ticks
      * 
@@ -490,6 +503,58 @@ public abstract class Entity {
         }, force ? 0 : this._delayTicks);
     }
 
+    /**
+     * Creates the counterpart of this entity in a fork of its simulation. The counterpart is created from the state of
+     * this entity and then takes over the rest of its state by {@link #copyStateFrom(Entity)}.
+     * 
+     * @param fork
+     *            The fork to create the counterpart in
+     * @return The counterpart
+     */
+    Entity forkInto(Simulation fork) {
+        Entity copy = this.state().createEntity(fork);
+        if (copy.getClass() == this.getClass()) {
+            copy.copyStateFrom(this);
+        }
+        return copy;
+    }
+
+    /**
+     * Whether the states of this entity refer to data of this entity which changes, like an inventory. The world objects
+     * of such entities are replaced in a fork, so that their states refer to the counterparts in the fork.
+     * 
+     * @return true iff the states refer to data of this entity
+     */
+    boolean stateRefersToEntity() {
+        return false;
+    }
+
+    /**
+     * Takes over the state of an entity of the same class in the simulation this entity's simulation was forked from.
+     * This method exists to be overriden by entities with additional state; overriding methods have to call this
+     * implementation. State that is expensive to copy should be shared until it is changed.
+     * 
+     * @param other
+     *            The entity to take the state from
+     */
+    protected void copyStateFrom(Entity other) {
+        this._delayTicks = other._delayTicks;
+        this._blockedUntilTick = other._blockedUntilTick;
+    }
+
+    /**
+     * Informs this entity that the simulation changed its world object. Called right before the event describing the
+     * change is raised. Subclasses may override this method to update state derived from the world object.
+     * 
+     * @param wob
+     *            The new world object of this entity or null if it was despawned
+     * @param ev
+     *            The event describing the change
+     */
+    protected void worldObjectChanged(WorldObject wob, SimulationEvent ev) {
+        // default implementation: do nothing
+    }
+
     /**
      * Runs the given runnable after this entity is free
      * 
@@ -507,7 +572,8 @@ public abstract class Entity {
      * Runs the given runnable after this entity is free
      * 
      * If (this.simulation().tickCount() {@literal >}= this._blockedUntilTick)
-     * the runnable is executed immediately
+     * the runnable is executed immediately. In fast-forward mode the simulation is advanced to that tick instead of
+     * waiting for it.
      * 
      * @param fn
      *            The runnable
@@ -516,11 +582,14 @@ public abstract class Entity {
      *            Use 0 or negative numbers to instantly run fn regardless of busy state.
      */
     protected synchronized void delayed(Runnable fn, int delay) {
+        Simulation.checkpoint();
         if (delay > 0) {
             int thisMoveTick = this._blockedUntilTick;
-            if (this.simulation().tickCount() < thisMoveTick) {
+            if (this.simulation().fastForward()) {
+                this.simulation().advanceTo(thisMoveTick);
+            } else if (this.simulation().tickCount() < thisMoveTick) {
                 Semaphore sem = new Semaphore(0);
-                EventDispatcher.addListener(TickEvent.class, ev -> {
+                EventListener listener = EventDispatcher.addListener(TickEvent.class, ev -> {
                     TickEvent te = (TickEvent) ev;
                     if ((te.simulation == this.simulation()) && (te.tickCount >= thisMoveTick)) {
                         sem.release();
@@ -528,15 +597,42 @@ public abstract class Entity {
                     }
                     return true;
                 });
-                sem.acquireUninterruptibly();
+                try {
+                    awaitTick(sem);
+                } finally {
+                    EventDispatcher.removeListener(listener);
+                }
             }
         }
         synchronized (this.simulation()) {
             this._blockedUntilTick = this.simulation().tickCount() + delay;
+            this.simulation().actionPerformed();
             fn.run();
         }
     }
 
+    /**
+     * Waits for the given semaphore, checking every {@link #CHECKPOINT_MILLIS} milliseconds whether the task was
+     * cancelled. Like before, interrupts do not stop the waiting; the interrupt status is kept.
+     */
+    private static void awaitTick(Semaphore sem) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (sem.tryAcquire(CHECKPOINT_MILLIS, TimeUnit.MILLISECONDS)) return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                Simulation.checkpoint();
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     // Exceptions:
 
     /**
@@ -83,6 +83,32 @@ public interface EntityCollector {
      */
     void drop(Class<? extends Entity> cls) throws CanNotDropException, EntityNotAlive;
 
+    /**
+     * Collect all collectable entities of the given class with the same coordinates as this entity collector in a
+     * single action
+     * 
+     * @param cls
+     *            class of a collectable entity
+     * @return The number of collected entities
+     * @throws EntityNotAlive
+     *             When the entity is not alive
+     */
+    int collectAll(Class<? extends Entity> cls) throws EntityNotAlive;
+
+    /**
+     * Drop the given number of entities of the given class in a single action
+     * 
+     * @param cls
+     *            The type of entity to drop
+     * @param count
+     *            The number of entities to drop
+     * @throws CanNotDropException
+     *             if this entity collector can not drop that many entities of the given class
+     * @throws EntityNotAlive
+     *             When the entity is not alive
+     */
+    void drop(Class<? extends Entity> cls, int count) throws CanNotDropException, EntityNotAlive;
+
     /**
      * Try to collect a collectable entity with the given class
      * 
@@ -8,10 +8,15 @@
 package de.unistuttgart.informatik.fius.icge.simulation;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionAttribute;
 import de.unistuttgart.informatik.fius.icge.territory.EntityState;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
 
 /**
  * A entity which is also a collector and has an inventory
@@ -25,7 +30,7 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
      */
     public abstract static class GreedyEntityState implements EntityState {
         /** The inventory of the greedy entity. */
-        protected final ArrayList<Entity> inventory;
+        protected final Inventory inventory;
 
         /**
          * Creates a new greedy entity state with the given inventory.
@@ -33,7 +38,7 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
          * @param inventory
          *            The invetory for the state.
          */
-        public GreedyEntityState(ArrayList<Entity> inventory) {
+        public GreedyEntityState(Inventory inventory) {
             this.inventory = inventory;
         }
 
@@ -45,7 +50,7 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
 
     /** internal inventory of a greedy entity */
     @InspectionAttribute(readOnly = true, name = "Inventory")
-    protected final ArrayList<Entity> _inventory;
+    protected final Inventory _inventory;
 
     /**
      * Creates a new greedy entity in the given simulation with the given initial inventory
@@ -55,11 +60,16 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
      * @param inventory
      *            The initial inventory for the greedy entity.
      */
-    public GreedyEntity(Simulation sim, ArrayList<Entity> inventory) {
+    public GreedyEntity(Simulation sim, Inventory inventory) {
         super(sim);
         this._inventory = inventory;
     }
 
+    @Override
+    boolean stateRefersToEntity() {
+        return true; // the state holds the inventory
+    }
+
     /**
      * Internal test if an entity can be collected by this greedy entity
      * 
@@ -74,19 +84,6 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
                 && ent.worldObject().isSamePos(this.worldObject());
     }
 
-    /**
-     * Internal test if an entity can be dropped by this greedy entity
-     * 
-     * @param ent
-     *            entity to test
-     * @return Whether the entity can be dropped
-     * @throws EntityNotAlive
-     *             When the entity is not alive
-     */
-    protected boolean canDropEntity(Entity ent) throws EntityNotAlive {
-        return canDropType(ent.getClass());
-    }
-
     /**
      * Check if this greedy entity can collect entities of the given class
      * 
@@ -105,6 +102,15 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
      */
     protected abstract boolean canDropType(Class<? extends Entity> cls);
 
+    /**
+     * Create a new entity of the given class, which is about to be dropped from the inventory
+     * 
+     * @param cls
+     *            The type of entity to create; only called for types accepted by {@link #canDropType(Class)}
+     * @return The new entity, which is not spawned yet
+     */
+    protected abstract Entity createInventoryEntity(Class<? extends Entity> cls);
+
     /**
      * Internal entity collection logic of greedy entity
      * 
@@ -116,15 +122,25 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
      *             When the entity is not alive
      */
     private void collectEntity(CollectableEntity ent) throws EntityNotAlive {
-        ent.despawn();
-        this._inventory.add(ent);
+        ent.forceDespawn(); // the collector is acting, so don't wait for the collected entity to be free
+        this._inventory.add(ent.getClass());
         this.collected(ent);
     }
 
+    /**
+     * @return The collectable entities on the cell of this entity
+     * @throws EntityNotAlive
+     *             When this entity is not alive
+     */
+    private List<CollectableEntity> collectablesHere() throws EntityNotAlive {
+        WorldObject wob = this.worldObject();
+        return this.simulation().collectablesAt(wob.column, wob.row);
+    }
+
     @Override
     public boolean canCollect(Class<? extends Entity> cls) throws EntityNotAlive {
         synchronized (this.simulation()) {
-            for (Entity ent : this.simulation().entities()) {
+            for (Entity ent : this.collectablesHere()) {
                 if ((ent.getClass() == cls) && canCollectEntity(ent)) return true;
             }
         }
@@ -141,7 +157,7 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
     @Override
     public boolean canCollect() throws EntityNotAlive {
         synchronized (this.simulation()) {
-            for (Entity ent : this.simulation().entities()) {
+            for (Entity ent : this.collectablesHere()) {
                 if (canCollectEntity(ent)) return true;
             }
         }
@@ -151,7 +167,7 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
     @Override
     public void collect(Class<? extends Entity> cls) throws CanNotCollectException, EntityNotAlive {
         this.delayed(() -> {
-            for (Entity ent : this.simulation().entities()) {
+            for (Entity ent : this.collectablesHere()) {
                 if ((ent.getClass() == cls) && canCollectEntity(ent)) {
                     this.collectEntity((CollectableEntity) ent);
                     return;
@@ -164,7 +180,7 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
     @Override
     public void collect() throws CanNotCollectException, EntityNotAlive {
         this.delayed(() -> {
-            for (Entity ent : this.simulation().entities()) {
+            for (Entity ent : this.collectablesHere()) {
                 if (canCollectEntity(ent)) {
                     this.collectEntity((CollectableEntity) ent);
                     return;
@@ -177,25 +193,73 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
     @Override
     public boolean canDrop(Class<? extends Entity> cls) throws EntityNotAlive {
         if (!this.alive()) throw new EntityNotAlive();
-        for (Entity ent : this._inventory) {
-            if (ent.getClass() == cls && this.canDropEntity(ent)) return true;
-        }
-        return false;
+        return this.canDropType(cls) && (this._inventory.count(cls) > 0);
     }
 
     @Override
     public void drop(Class<? extends Entity> cls) throws CanNotDropException, EntityNotAlive {
         this.delayed(() -> {
-            for (Entity ent : this._inventory) {
-                if (ent.getClass() == cls && this.canDropEntity(ent)) {
-                    this._inventory.remove(ent);
-                    WorldObject wob = this.worldObject();
-                    ent.spawn(wob.column, wob.row);
-                    this.dropped(ent);
-                    return;
+            if (!this.canDropType(cls) || !this._inventory.remove(cls)) throw new CanNotDropException();
+            WorldObject wob = this.worldObject();
+            Entity ent = this.createInventoryEntity(cls);
+            try {
+                ent.spawn(wob.column, wob.row);
+            } catch (RuntimeException e) {
+                this._inventory.add(cls);
+                throw e;
+            }
+            this.dropped(ent);
+        });
+    }
+
+    @Override
+    public int collectAll(Class<? extends Entity> cls) throws EntityNotAlive {
+        int[] collected = new int[1];
+        this.delayed(() -> {
+            List<Entity> entities = new ArrayList<>();
+            Map<Entity, WorldObject> changes = new LinkedHashMap<>();
+            for (Entity ent : this.collectablesHere()) {
+                if ((ent.getClass() == cls) && canCollectEntity(ent)) {
+                    entities.add(ent);
+                    changes.put(ent, null);
                 }
             }
-            throw new CanNotDropException();
+            if (entities.isEmpty()) return;
+            this.simulation().setWorldObjects(changes, new CollectEvent(this.simulation(), this, cls, entities));
+            this._inventory.add(cls, entities.size());
+            entities.forEach(this::collected);
+            collected[0] = entities.size();
+        });
+        return collected[0];
+    }
+
+    /**
+     * Drop the given number of entities of the given class in a single action
+     * <p>
+     * All entities are placed in one step, so entity specific spawn logic is not run for them.
+     */
+    @Override
+    public void drop(Class<? extends Entity> cls, int count) throws CanNotDropException, EntityNotAlive {
+        if (count < 0) throw new IllegalArgumentException("Count must not be negative.");
+        this.delayed(() -> {
+            if (!this.canDropType(cls) || !this._inventory.remove(cls, count)) throw new CanNotDropException();
+            WorldObject wob = this.worldObject();
+            List<Entity> entities = new ArrayList<>(count);
+            Map<Entity, WorldObject> changes = new LinkedHashMap<>();
+            try {
+                if (this.simulation().isSolidAt(wob.column, wob.row)) throw new CellBlockedBySolidEntity();
+                for (int i = 0; i < count; ++i) {
+                    Entity ent = this.createInventoryEntity(cls);
+                    entities.add(ent);
+                    changes.put(ent, new WorldObject(ent.state(), wob.column, wob.row, ent.getZ(), Direction.EAST));
+                }
+            } catch (RuntimeException e) {
+                this._inventory.add(cls, count);
+                throw e;
+            }
+            if (entities.isEmpty()) return;
+            this.simulation().setWorldObjects(changes, new DropEvent(this.simulation(), this, cls, entities));
+            entities.forEach(this::dropped);
         });
     }
 
@@ -222,4 +286,60 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
     void dropped(Entity ent) {
         // default implementation: do nothing
     }
+
+    /**
+     * Event signaling that a greedy entity collected multiple entities in a single action
+     */
+    public static class CollectEvent extends EntityEvent {
+        /** The type of the collected entities. */
+        public final Class<? extends Entity> type;
+        /** The collected entities. */
+        public final List<Entity> entities;
+
+        /**
+         * Creates a new collect event in the given simulation for the given greedy entity
+         * 
+         * @param sim
+         *            The simulation to create the event in.
+         * @param entity
+         *            The entity that collected.
+         * @param type
+         *            The type of the collected entities
+         * @param entities
+         *            The collected entities
+         */
+        CollectEvent(Simulation sim, Entity entity, Class<? extends Entity> type, List<Entity> entities) {
+            super(sim, entity);
+            this.type = type;
+            this.entities = Collections.unmodifiableList(entities);
+        }
+    }
+
+    /**
+     * Event signaling that a greedy entity dropped multiple entities in a single action
+     */
+    public static class DropEvent extends EntityEvent {
+        /** The type of the dropped entities. */
+        public final Class<? extends Entity> type;
+        /** The dropped entities. */
+        public final List<Entity> entities;
+
+        /**
+         * Creates a new drop event in the given simulation for the given greedy entity
+         * 
+         * @param sim
+         *            The simulation to create the event in.
+         * @param entity
+         *            The entity that dropped.
+         * @param type
+         *            The type of the dropped entities
+         * @param entities
+         *            The dropped entities
+         */
+        DropEvent(Simulation sim, Entity entity, Class<? extends Entity> type, List<Entity> entities) {
+            super(sim, entity);
+            this.type = type;
+            this.entities = Collections.unmodifiableList(entities);
+        }
+    }
 }
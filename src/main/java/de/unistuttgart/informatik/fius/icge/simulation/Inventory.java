@@ -0,0 +1,164 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The inventory of a greedy entity.
+ * <p>
+ * The inventory only counts how many entities of each type it holds. The entity objects themselves are not kept and
+ * are created again when they are dropped.
+ */
+public class Inventory {
+
+    private HashMap<Class<? extends Entity>, Integer> _counts;
+    private int _size = 0;
+    /** Whether the counts are shared with another inventory and have to be copied before they are changed. */
+    private boolean _shared = false;
+
+    /**
+     * Creates a new empty inventory
+     */
+    public Inventory() {
+        this._counts = new HashMap<>();
+    }
+
+    /**
+     * Creates a new inventory with the same counts as the given inventory. The counts are shared until either inventory
+     * is changed, so copying is cheap.
+     *
+     * @param other
+     *            The inventory to copy the counts from
+     */
+    public Inventory(Inventory other) {
+        synchronized (other) {
+            other._shared = true;
+            this._counts = other._counts;
+            this._size = other._size;
+            this._shared = true;
+        }
+    }
+
+    /**
+     * Get the number of entities of the given type in this inventory
+     *
+     * @param cls
+     *            The type of entity
+     * @return The number of entities
+     */
+    public synchronized int count(Class<? extends Entity> cls) {
+        Integer count = this._counts.get(cls);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return The number of entities of all types in this inventory
+     */
+    public synchronized int size() {
+        return this._size;
+    }
+
+    /**
+     * @return Whether this inventory does not contain any entity
+     */
+    public synchronized boolean isEmpty() {
+        return this._size == 0;
+    }
+
+    /**
+     * Adds one entity of the given type to this inventory
+     *
+     * @param cls
+     *            The type of entity
+     */
+    public void add(Class<? extends Entity> cls) {
+        this.add(cls, 1);
+    }
+
+    /**
+     * Adds the given number of entities of the given type to this inventory
+     *
+     * @param cls
+     *            The type of entity
+     * @param count
+     *            The number of entities to add
+     */
+    public synchronized void add(Class<? extends Entity> cls, int count) {
+        if (count < 0) throw new IllegalArgumentException("Count must not be negative.");
+        this.setCount(cls, this.count(cls) + count);
+    }
+
+    /**
+     * Removes one entity of the given type from this inventory if there is one
+     *
+     * @param cls
+     *            The type of entity
+     * @return Whether an entity was removed
+     */
+    public boolean remove(Class<? extends Entity> cls) {
+        return this.remove(cls, 1);
+    }
+
+    /**
+     * Removes the given number of entities of the given type from this inventory if there are enough
+     *
+     * @param cls
+     *            The type of entity
+     * @param count
+     *            The number of entities to remove
+     * @return Whether the entities were removed; nothing is removed if there are not enough entities
+     */
+    public synchronized boolean remove(Class<? extends Entity> cls, int count) {
+        if (count < 0) throw new IllegalArgumentException("Count must not be negative.");
+        int current = this.count(cls);
+        if (current < count) return false;
+        this.setCount(cls, current - count);
+        return true;
+    }
+
+    /**
+     * Sets the number of entities of the given type in this inventory
+     *
+     * @param cls
+     *            The type of entity
+     * @param count
+     *            The new number of entities
+     */
+    public synchronized void setCount(Class<? extends Entity> cls, int count) {
+        if (count < 0) throw new IllegalArgumentException("Count must not be negative.");
+        if (this._shared) {
+            this._counts = new HashMap<>(this._counts);
+            this._shared = false;
+        }
+        Integer old = count == 0 ? this._counts.remove(cls) : this._counts.put(cls, count);
+        this._size += count - (old == null ? 0 : old);
+    }
+
+    /**
+     * @return The types of entities in this inventory together with their numbers
+     */
+    public synchronized Map<Class<? extends Entity>, Integer> counts() {
+        return Collections.unmodifiableMap(new HashMap<>(this._counts));
+    }
+
+    @Override
+    public synchronized String toString() {
+        List<String> entries = new ArrayList<>(this._counts.size());
+        for (Entry<Class<? extends Entity>, Integer> entry : this._counts.entrySet()) {
+            entries.add(entry.getKey().getSimpleName() + ": " + entry.getValue());
+        }
+        Collections.sort(entries);
+        return "{" + String.join(", ", entries) + "}";
+    }
+}
@@ -7,8 +7,6 @@
 
 package de.unistuttgart.informatik.fius.icge.simulation;
 
-import java.util.ArrayList;
-
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionAttribute;
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionMethod;
 import de.unistuttgart.informatik.fius.icge.territory.EntityState;
@@ -30,14 +28,13 @@ public class Mario extends GreedyEntity {
          * @param inventory
          *            The inventory for this state.
          */
-        public MarioState(ArrayList<Entity> inventory) {
+        public MarioState(Inventory inventory) {
             super(inventory);
         }
 
         @Override
         public Entity createEntity(Simulation sim) {
-            // This line only works as long as mario can only collect coins
-            return new Mario(sim, this.inventory.size());
+            return new Mario(sim, new Inventory(this.inventory));
         }
     }
 
@@ -48,7 +45,19 @@ public class Mario extends GreedyEntity {
      *            The simulation for the new mario.
      */
     public Mario(Simulation sim) {
-        super(sim, new ArrayList<>());
+        super(sim, new Inventory());
+    }
+
+    /**
+     * Creates a new mario with the given initial inventory in the given simulation.
+     * 
+     * @param sim
+     *            The simulation for the new mario.
+     * @param inventory
+     *            The initial inventory of mario.
+     */
+    public Mario(Simulation sim, Inventory inventory) {
+        super(sim, inventory);
     }
 
     /**
@@ -79,6 +88,12 @@ public class Mario extends GreedyEntity {
         return cls == Coin.class;
     }
 
+    @Override
+    protected Entity createInventoryEntity(Class<? extends Entity> cls) {
+        if (cls != Coin.class) throw new IllegalArgumentException("Mario can only drop coins.");
+        return new Coin(this.simulation());
+    }
+
     /**
      * Get the coin count of mario.
      * 
@@ -86,7 +101,7 @@ public class Mario extends GreedyEntity {
      */
     @InspectionAttribute
     public int getCoinCount() {
-        return this._inventory.size();
+        return this._inventory.count(Coin.class);
     }
 
     /**
@@ -97,17 +112,7 @@ public class Mario extends GreedyEntity {
      */
     @InspectionAttribute
     protected void setCoinCount(int count) {
-        int diff = count - getCoinCount();
-        if (diff > 0) {
-            for (int i = 0; i < diff; i++) {
-                this._inventory.add(new Coin(simulation()));
-            }
-        } else {
-            for (int i = 0; i < -diff; i++) {
-                int lastIndex = this._inventory.size() - 1;
-                this._inventory.remove(lastIndex);
-            }
-        }
+        this._inventory.setCount(Coin.class, count);
     }
 
     /**
@@ -137,6 +142,16 @@ public class Mario extends GreedyEntity {
         return this.tryCollect(Coin.class);
     }
 
+    /**
+     * Collect all coins on the current field in a single action.
+     * 
+     * @return The number of collected coins.
+     */
+    @InspectionMethod
+    public int collectAllCoins() {
+        return this.collectAll(Coin.class);
+    }
+
     /**
      * Check whether mario can currently drop a coin
      * 
@@ -154,6 +169,16 @@ public class Mario extends GreedyEntity {
         this.drop(Coin.class);
     }
 
+    /**
+     * Drop the given number of coins in a single action.
+     * 
+     * @param count
+     *            The number of coins to drop.
+     */
+    public void dropCoins(int count) {
+        this.drop(Coin.class, count);
+    }
+
     /**
      * Try to drop a coin.
      * 
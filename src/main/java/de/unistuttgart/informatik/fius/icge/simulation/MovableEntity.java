@@ -7,12 +7,11 @@
 
 package de.unistuttgart.informatik.fius.icge.simulation;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
 
-import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionMethod;
+import de.unistuttgart.informatik.fius.icge.territory.DistanceField;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
 
@@ -21,7 +20,9 @@ import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
  */
 public abstract class MovableEntity extends Entity {
 
-    private final Deque<MoveEvent> _positionStack = new ArrayDeque<>(100);
+    /** The latest position; the history is shared with the counterparts of this entity in forks. */
+    private PositionNode _lastPosition;
+    private MoveEvent _firstPosition;
 
     /**
      * Creates a new movable entity in the given simulation
@@ -31,21 +32,6 @@ public abstract class MovableEntity extends Entity {
      */
     protected MovableEntity(Simulation sim) {
         super(sim);
-
-        EventDispatcher.addListener(SpawnEvent.class, ev -> {
-            SpawnEvent se = (SpawnEvent) ev;
-            if ((se.simulation == this.simulation()) && (se.entity == this)) {
-                this._positionStack.add(new MoveEvent(this.simulation(), this, se.row, se.column));
-            }
-            return true;
-        });
-        EventDispatcher.addListener(MoveEvent.class, ev -> {
-            MoveEvent me = (MoveEvent) ev;
-            if ((me.simulation == this.simulation()) && (me.entity == this)) {
-                this._positionStack.add(me);
-            }
-            return true;
-        });
     }
 
     @Override
@@ -53,6 +39,23 @@ public abstract class MovableEntity extends Entity {
         return 100;
     }
 
+    @Override
+    protected void worldObjectChanged(WorldObject wob, SimulationEvent ev) {
+        if ((ev instanceof SpawnEvent) && (((SpawnEvent) ev).entity == this)) {
+            SpawnEvent se = (SpawnEvent) ev;
+            this.addPosition(new MoveEvent(this.simulation(), this, se.row, se.column));
+        } else if ((ev instanceof MoveEvent) && (((MoveEvent) ev).entity == this)) {
+            this.addPosition((MoveEvent) ev);
+        }
+    }
+
+    @Override
+    protected void copyStateFrom(Entity other) {
+        super.copyStateFrom(other);
+        this._lastPosition = ((MovableEntity) other)._lastPosition;
+        this._firstPosition = ((MovableEntity) other)._firstPosition;
+    }
+
     /**
      * Move this entity one field in the current direction
      * 
@@ -69,6 +72,66 @@ public abstract class MovableEntity extends Entity {
         });
     }
 
+    /**
+     * Move this entity the given number of fields in the current direction
+     * <p>
+     * The whole distance is covered by a single action, which keeps this entity busy as long as the same number of
+     * single moves would.
+     * 
+     * @param fields
+     *            The number of fields to move; must be positive and small enough for the delay of all moves to fit into
+     *            an int
+     * @throws IllegalMove
+     *             a field on the way is occupied by a solid entity
+     * @throws EntityNotAlive
+     *             the entity is not spawned or already despawned
+     */
+    public void move(int fields) throws IllegalMove, EntityNotAlive {
+        if (fields < 1) throw new IllegalArgumentException("Must move at least one field.");
+        int delay;
+        try {
+            delay = Math.multiplyExact(fields, this.getDelay());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Can not move that many fields at once.", e);
+        }
+        this.delayed(() -> {
+            WorldObject wobAfter = this.wobAfterMove(fields);
+            SimulationEvent ev = new MoveEvent(this.simulation(), this, wobAfter, fields);
+            this.simulation().setWorldObject(this, wobAfter, ev);
+        }, delay);
+    }
+
+    /**
+     * Get the number of fields in the current direction up to the next field which is occupied by a solid entity
+     * <p>
+     * The solid field itself can not be entered, so this entity can move one field less than the returned distance.
+     * 
+     * @return The distance to the solid field, e.g. 1 if it is the adjacent field, or -1 if there is none in that
+     *         direction
+     * @throws EntityNotAlive
+     *             the entity is not spawned or already despawned
+     */
+    @InspectionMethod
+    public int distanceToSolid() throws EntityNotAlive {
+        WorldObject wob = this.worldObject();
+        return this.simulation().distanceToSolid(wob.column, wob.row, wob.direction);
+    }
+
+    /**
+     * Get the number of fields in the current direction up to the next field which contains a collectable entity
+     * <p>
+     * Collectable entities behind a solid entity are not in sight and therefore not considered.
+     * 
+     * @return The number of moves it takes to reach the collectable entity or -1 if there is none in sight
+     * @throws EntityNotAlive
+     *             the entity is not spawned or already despawned
+     */
+    @InspectionMethod
+    public int distanceToCollectable() throws EntityNotAlive {
+        WorldObject wob = this.worldObject();
+        return this.simulation().distanceToCollectable(wob.column, wob.row, wob.direction);
+    }
+
     /**
      * Check if the entity can move one field in the current direction
      * 
@@ -121,7 +184,7 @@ public abstract class MovableEntity extends Entity {
      * @return The move event for the position
      */
     public MoveEvent firstPosition() {
-        return this._positionStack.peekFirst();
+        return this._firstPosition;
     }
 
     /**
@@ -130,7 +193,8 @@ public abstract class MovableEntity extends Entity {
      * @return The move event for the position
      */
     public MoveEvent lastPosition() {
-        return this._positionStack.peekLast();
+        PositionNode node = this._lastPosition;
+        return node == null ? null : node.position;
     }
 
     /**
@@ -141,11 +205,39 @@ public abstract class MovableEntity extends Entity {
      * @return A iterable of move events
      */
     public Iterable<MoveEvent> positionHistory() {
-        return () -> this._positionStack.iterator();
+        PositionNode node = this._lastPosition;
+        MoveEvent[] positions = new MoveEvent[node == null ? 0 : node.size];
+        for (int i = positions.length - 1; i >= 0; --i) {
+            positions[i] = node.position;
+            node = node.previous;
+        }
+        return Arrays.asList(positions);
     }
 
     // private
 
+    private void addPosition(MoveEvent position) {
+        if (this._lastPosition == null) {
+            this._firstPosition = position;
+        }
+        this._lastPosition = new PositionNode(position, this._lastPosition);
+    }
+
+    /**
+     * An immutable entry of the position history, linked to the entry before it
+     */
+    private static final class PositionNode {
+        final MoveEvent position;
+        final PositionNode previous;
+        final int size;
+
+        PositionNode(MoveEvent position, PositionNode previous) {
+            this.position = position;
+            this.previous = previous;
+            this.size = previous == null ? 1 : previous.size + 1;
+        }
+    }
+
     /**
      * Create a new world object with the calculated coordinates of one field in
      * front of this entity
@@ -157,28 +249,27 @@ public abstract class MovableEntity extends Entity {
      *             When the entity is not alive
      */
     private WorldObject wobAfterMove() throws IllegalMove, EntityNotAlive {
+        return this.wobAfterMove(1);
+    }
+
+    /**
+     * Create a new world object with the calculated coordinates of the given number of fields in
+     * front of this entity
+     * 
+     * @param fields
+     *            The number of fields to move
+     * @return The world object that would be when this entity would move now
+     * @throws IllegalMove
+     *             When the move is illegal
+     * @throws EntityNotAlive
+     *             When the entity is not alive
+     */
+    private WorldObject wobAfterMove(int fields) throws IllegalMove, EntityNotAlive {
         WorldObject wob = this.worldObject();
-        int column = wob.column;
-        int row = wob.row;
-        switch (wob.direction) {
-            case NORTH:
-                --row;
-            break;
-            case EAST:
-                ++column;
-            break;
-            case SOUTH:
-                ++row;
-            break;
-            case WEST:
-                --column;
-            break;
-        }
-        int newCol = column;
-        int newRow = row;
-        if (this.simulation().territory().containsWith(
-                wall -> (wall.column == newCol) && (wall.row == newRow) && wall.state.isSolid()))
-            throw new IllegalMove();
+        int solid = this.simulation().distanceToSolid(wob.column, wob.row, wob.direction);
+        if ((solid != -1) && (solid <= fields)) throw new IllegalMove();
+        int column = wob.column + (fields * DistanceField.columnOffset(wob.direction));
+        int row = wob.row + (fields * DistanceField.rowOffset(wob.direction));
         return new WorldObject(wob.state, column, row, 100, wob.direction);
     }
 
@@ -248,6 +339,8 @@ public abstract class MovableEntity extends Entity {
         public final int column;
         /** The row the entity moved to. */
         public final int row;
+        /** The number of fields the entity moved. */
+        public final int distance;
 
         /**
          * Creates a new move event in the given simulation for the given entity signaling the move to the given point.
@@ -265,6 +358,7 @@ public abstract class MovableEntity extends Entity {
             super(sim, entity);
             this.row = row;
             this.column = column;
+            this.distance = 1;
         }
 
         /**
@@ -280,9 +374,27 @@ public abstract class MovableEntity extends Entity {
          * 
          */
         MoveEvent(Simulation sim, MovableEntity entity, WorldObject wob) {
+            this(sim, entity, wob, 1);
+        }
+
+        /**
+         * Creates a new move event in the given simulation for the given entity signaling the move over the given number
+         * of fields to the point described in the given world object.
+         * 
+         * @param sim
+         *            The simulation to create the event in.
+         * @param entity
+         *            The entity to create the event for.
+         * @param wob
+         *            The world object to get the location after the move from
+         * @param distance
+         *            The number of fields the entity moved
+         */
+        MoveEvent(Simulation sim, MovableEntity entity, WorldObject wob, int distance) {
             super(sim, entity);
             this.row = wob.row;
             this.column = wob.column;
+            this.distance = distance;
         }
     }
 
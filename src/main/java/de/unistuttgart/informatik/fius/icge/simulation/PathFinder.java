@@ -0,0 +1,342 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.unistuttgart.informatik.fius.icge.territory.DistanceField;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
+
+/**
+ * Answers shortest path and reachability queries for the cells of a simulation.
+ * <p>
+ * The path finder caches one {@link DistanceField} per target cell. The simulation hands every change of a world object
+ * to the path finder, which applies the changes before the next query: the solid cells and the bounds of the world
+ * objects are updated per change and only the distance fields affected by a cell that got blocked or free are dropped,
+ * so repeated queries stay cheap while entities move around.
+ * <p>
+ * Use {@link Simulation#pathFinder()} to get the path finder of a simulation.
+ */
+public class PathFinder {
+
+    private static final int MAX_CACHED_FIELDS = 256;
+    /** The number of changes kept until the next query; beyond it, the territory is scanned again instead. */
+    private static final int MAX_PENDING_CHANGES = 1 << 16;
+
+    private final Simulation _sim;
+    /** The changes not applied yet; guarded by itself, since it is filled while the simulation is locked. */
+    private final ArrayList<Simulation.Change> _pending = new ArrayList<>();
+    /** Whether the whole territory has to be scanned before the next query; guarded by {@link #_pending}. */
+    private boolean _rescan = true;
+    /** The number of solid world objects per cell. */
+    private final HashMap<Long, Integer> _solidCells = new HashMap<>();
+    /** The number of world objects per column and per row. */
+    private final TreeMap<Integer, Integer> _columns = new TreeMap<>();
+    private final TreeMap<Integer, Integer> _rows = new TreeMap<>();
+    private int _minColumn, _minRow, _maxColumn, _maxRow;
+    private final LinkedHashMap<Long, DistanceField> _fields = new LinkedHashMap<Long, DistanceField>(16, 0.75f, true) {
+        private static final long serialVersionUID = -1796383460384412233L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, DistanceField> eldest) {
+            return this.size() > MAX_CACHED_FIELDS;
+        }
+    };
+
+    /**
+     * Creates a new path finder for the given simulation
+     *
+     * @param sim
+     *            The simulation to answer queries for
+     */
+    PathFinder(Simulation sim) {
+        this._sim = sim;
+    }
+
+    /**
+     * Get the length of the shortest path between two cells.
+     *
+     * @param fromColumn
+     *            The column of the start cell
+     * @param fromRow
+     *            The row of the start cell
+     * @param toColumn
+     *            The column of the target cell
+     * @param toRow
+     *            The row of the target cell
+     * @return The number of moves needed or {@link DistanceField#UNREACHABLE}
+     * @throws IllegalStateException
+     *             When the world objects are far apart and the path is too hard to find
+     */
+    public synchronized int distance(int fromColumn, int fromRow, int toColumn, int toRow) {
+        DistanceField field = this.distanceField(toColumn, toRow, fromColumn, fromRow);
+        if (field != null) return field.distance(fromColumn, fromRow);
+        List<Direction> path = this.searchPath(fromColumn, fromRow, toColumn, toRow);
+        return path == null ? DistanceField.UNREACHABLE : path.size();
+    }
+
+    /**
+     * Get the length of the shortest path between two entities.
+     *
+     * @param from
+     *            The entity to start at
+     * @param to
+     *            The entity to reach
+     * @return The number of moves needed or {@link DistanceField#UNREACHABLE}
+     * @throws Entity.EntityNotAlive
+     *             When one of the entities is not alive
+     */
+    public int distance(Entity from, Entity to) {
+        WorldObject fromWob = from.worldObject();
+        WorldObject toWob = to.worldObject();
+        return this.distance(fromWob.column, fromWob.row, toWob.column, toWob.row);
+    }
+
+    /**
+     * Checks whether the target cell can be reached from the start cell.
+     *
+     * @param fromColumn
+     *            The column of the start cell
+     * @param fromRow
+     *            The row of the start cell
+     * @param toColumn
+     *            The column of the target cell
+     * @param toRow
+     *            The row of the target cell
+     * @return Whether there is a path
+     */
+    public boolean isReachable(int fromColumn, int fromRow, int toColumn, int toRow) {
+        return this.distance(fromColumn, fromRow, toColumn, toRow) != DistanceField.UNREACHABLE;
+    }
+
+    /**
+     * Checks whether an entity can reach another entity.
+     *
+     * @param from
+     *            The entity to start at
+     * @param to
+     *            The entity to reach
+     * @return Whether there is a path
+     * @throws Entity.EntityNotAlive
+     *             When one of the entities is not alive
+     */
+    public boolean isReachable(Entity from, Entity to) {
+        return this.distance(from, to) != DistanceField.UNREACHABLE;
+    }
+
+    /**
+     * Get a shortest path between two cells.
+     *
+     * @param fromColumn
+     *            The column of the start cell
+     * @param fromRow
+     *            The row of the start cell
+     * @param toColumn
+     *            The column of the target cell
+     * @param toRow
+     *            The row of the target cell
+     * @return The directions of the moves leading to the target or null if the target can not be reached
+     * @throws IllegalStateException
+     *             When the world objects are far apart and the path is too hard to find
+     */
+    public synchronized List<Direction> shortestPath(int fromColumn, int fromRow, int toColumn, int toRow) {
+        DistanceField field = this.distanceField(toColumn, toRow, fromColumn, fromRow);
+        if (field != null) return field.path(fromColumn, fromRow);
+        return this.searchPath(fromColumn, fromRow, toColumn, toRow);
+    }
+
+    /**
+     * Get the distance field of the given cell.
+     * <p>
+     * The returned field covers every cell that currently contains a world object, so it can be used to look up the
+     * distances from one entity to all others.
+     *
+     * @param column
+     *            The column of the target cell
+     * @param row
+     *            The row of the target cell
+     * @return The distance field
+     * @throws IllegalStateException
+     *             When the world objects are spread over more than {@link DistanceField#MAX_CELLS} cells
+     */
+    public synchronized DistanceField distanceField(int column, int row) {
+        DistanceField field = this.distanceField(column, row, column, row);
+        if (field == null) throw new IllegalStateException("The territory is too large for a distance field.");
+        return field;
+    }
+
+    // private
+
+    /**
+     * @return The distance field or null if its bounds would be too large
+     */
+    private DistanceField distanceField(int column, int row, int includeColumn, int includeRow) {
+        this.update();
+        long key = DistanceField.cellKey(column, row);
+        DistanceField field = this._fields.get(key);
+        if ((field == null) || !field.contains(includeColumn, includeRow) || !field.contains(this._minColumn, this._minRow)
+                || !field.contains(this._maxColumn, this._maxRow)) {
+            int minColumn = Math.min(this._minColumn, Math.min(column, includeColumn)) - 1;
+            int minRow = Math.min(this._minRow, Math.min(row, includeRow)) - 1;
+            int maxColumn = Math.max(this._maxColumn, Math.max(column, includeColumn)) + 1;
+            int maxRow = Math.max(this._maxRow, Math.max(row, includeRow)) + 1;
+            if (!DistanceField.fits(minColumn, minRow, maxColumn, maxRow)) return null;
+            field = new DistanceField(column, row, minColumn, minRow, maxColumn, maxRow, this._solidCells.keySet());
+            this._fields.put(key, field);
+        }
+        return field;
+    }
+
+    /**
+     * Searches a path without a distance field, for territories whose world objects are far apart.
+     */
+    private List<Direction> searchPath(int fromColumn, int fromRow, int toColumn, int toRow) {
+        int minColumn = Math.min(this._minColumn, Math.min(fromColumn, toColumn)) - 1;
+        int minRow = Math.min(this._minRow, Math.min(fromRow, toRow)) - 1;
+        int maxColumn = Math.max(this._maxColumn, Math.max(fromColumn, toColumn)) + 1;
+        int maxRow = Math.max(this._maxRow, Math.max(fromRow, toRow)) + 1;
+        return DistanceField.searchPath(fromColumn, fromRow, toColumn, toRow, minColumn, minRow, maxColumn, maxRow,
+                this._solidCells.keySet());
+    }
+
+    /**
+     * Records changes of world objects, which are applied before the next query. Called by the simulation while it is
+     * locked.
+     *
+     * @param changes
+     *            The changes in the order they were made
+     */
+    void changed(List<Simulation.Change> changes) {
+        synchronized (this._pending) {
+            if (this._rescan) return;
+            if ((this._pending.size() + changes.size()) > MAX_PENDING_CHANGES) {
+                this.reset();
+                return;
+            }
+            this._pending.addAll(changes);
+        }
+    }
+
+    /**
+     * Makes the path finder scan the whole territory before the next query, e.g. after the territory was replaced.
+     * Called by the simulation while it is locked.
+     */
+    void reset() {
+        synchronized (this._pending) {
+            this._pending.clear();
+            this._pending.trimToSize();
+            this._rescan = true;
+        }
+    }
+
+    /**
+     * Applies the pending changes to the solid cells and the bounds and drops all affected distance fields.
+     */
+    private void update() {
+        List<Simulation.Change> changes;
+        synchronized (this._pending) {
+            changes = this._rescan ? null : new ArrayList<>(this._pending);
+            this._pending.clear();
+        }
+        if (changes == null) {
+            synchronized (this._sim) { // no change may be recorded between the scan and the next changes
+                synchronized (this._pending) {
+                    this.rescan();
+                }
+            }
+            return;
+        }
+
+        for (Simulation.Change change : changes) {
+            if (change.before != null) {
+                this.remove(change.before);
+            }
+            if (change.after != null) {
+                this.add(change.after);
+            }
+        }
+        this.updateBounds();
+    }
+
+    /**
+     * Rebuilds everything from the territory of the simulation. Called while the simulation and {@link #_pending} are
+     * locked.
+     */
+    private void rescan() {
+        this._fields.clear();
+        this._solidCells.clear();
+        this._columns.clear();
+        this._rows.clear();
+        this._sim.territory().forEach(wob -> {
+            increment(this._columns, wob.column);
+            increment(this._rows, wob.row);
+            if (wob.state.isSolid()) {
+                increment(this._solidCells, DistanceField.cellKey(wob.column, wob.row));
+            }
+        });
+        this.updateBounds();
+        this._pending.clear();
+        this._rescan = false;
+    }
+
+    private void add(WorldObject wob) {
+        increment(this._columns, wob.column);
+        increment(this._rows, wob.row);
+        if (wob.state.isSolid() && increment(this._solidCells, DistanceField.cellKey(wob.column, wob.row))) {
+            this.invalidate(wob.column, wob.row, true);
+        }
+    }
+
+    private void remove(WorldObject wob) {
+        decrement(this._columns, wob.column);
+        decrement(this._rows, wob.row);
+        if (wob.state.isSolid() && decrement(this._solidCells, DistanceField.cellKey(wob.column, wob.row))) {
+            this.invalidate(wob.column, wob.row, false);
+        }
+    }
+
+    private void updateBounds() {
+        if (this._columns.isEmpty()) {
+            this._minColumn = this._minRow = this._maxColumn = this._maxRow = 0;
+            return;
+        }
+        this._minColumn = this._columns.firstKey();
+        this._maxColumn = this._columns.lastKey();
+        this._minRow = this._rows.firstKey();
+        this._maxRow = this._rows.lastKey();
+    }
+
+    /**
+     * @return Whether the key was not counted before
+     */
+    private static <K> boolean increment(Map<K, Integer> counts, K key) {
+        return counts.merge(key, 1, Integer::sum) == 1;
+    }
+
+    /**
+     * @return Whether the key is not counted anymore
+     */
+    private static <K> boolean decrement(Map<K, Integer> counts, K key) {
+        return counts.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1) == null;
+    }
+
+    private void invalidate(int column, int row, boolean nowSolid) {
+        for (Iterator<DistanceField> it = this._fields.values().iterator(); it.hasNext();) {
+            if (it.next().isAffectedBy(column, row, nowSolid)) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -10,25 +10,49 @@ package de.unistuttgart.informatik.fius.icge.simulation;
 import java.util.*;
 import java.util.concurrent.Semaphore;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import de.unistuttgart.informatik.fius.icge.event.Event;
 import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
+import de.unistuttgart.informatik.fius.icge.territory.DistanceField;
 import de.unistuttgart.informatik.fius.icge.territory.Territory;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
 import sun.util.locale.StringTokenIterator;
 
 /**
  * Simulation managing Entities and Territory.
  */
 public class Simulation {
+    /** The simulation whose task runs on the current thread; inherited by the threads the task starts. */
+    private static final InheritableThreadLocal<Simulation> TASK_SIMULATION = new InheritableThreadLocal<>();
 
+    /** The world objects of the alive entities whose states are not static. */
     private final HashMap<Entity, WorldObject> _entityObjects = new HashMap<>();
+    /**
+     * The world objects of the alive entities whose states are static and which are not collectable; shared with forks
+     * until it is changed.
+     */
+    private HashMap<Entity, WorldObject> _staticObjects = new HashMap<>();
+    private boolean _staticShared = false;
+    /** In a fork, the static entities of the forked simulation which have no counterpart in this fork yet. */
+    private Map<Entity, WorldObject> _unforked;
     private Territory _tty;
     private boolean _running = false;
+    private boolean _fastForward = false;
+    private volatile String _cancelReason;
     private int _tickCount = 0;
+    private volatile int _actionCount = 0;
     private TimerTask _timerTask;
     private Semaphore _timerTaskSem;
     private int _delay = 10;
+    private PathFinder _pathFinder;
+    private CellIndex _solidCells = new CellIndex();
+    private CellIndex _collectableCells = new CellIndex();
+    /** The alive collectable entities per cell. */
+    private HashMap<Long, List<CollectableEntity>> _collectablesByCell = new HashMap<>();
+    /** The counterparts of the entities of the simulation this simulation was forked from. */
+    private IdentityHashMap<Entity, Entity> _forkedEntities;
 
     /**
      * Creates a new `Simumlation` from a `Territory`
@@ -42,7 +66,7 @@ public class Simulation {
 
     /**
      * Creates a new `Simulation` from the state of an existing `Simulation`. It does initially have the same `Territory`, tick
-     * count and is running if the other `Simulation` is running.
+     * count and is running or in fast-forward mode if the other `Simulation` is.
      * 
      * NOTE: All previously existing `Entity` objects will still be associated with the other `Simulation` and no `Entity`
      * objects are shared between the two `Simulation`s
@@ -54,13 +78,85 @@ public class Simulation {
         synchronized (sim) {
             this.init(sim._tty);
             this._running = sim._running;
+            this._fastForward = sim._fastForward;
             this._tickCount = sim._tickCount;
-            if (this._running) {
+            if (this._running && !this._fastForward) {
                 this.startTimer();
             }
         }
     }
 
+    private Simulation() {
+        // used by fork()
+    }
+
+    /**
+     * Forks this `Simulation`. The fork starts with the same `Territory`, tick count and `Entity` states, but is
+     * independent of this `Simulation` afterwards. Use {@link #forkedEntity(Entity)} to get the counterparts of the
+     * `Entity`s of this `Simulation` in the fork.
+     * 
+     * Forking is cheap: the immutable `Territory` and the position histories are shared, the cell indexes and inventories
+     * are shared until they are changed. Only the `WorldObject`s whose states refer to an inventory are replaced in the
+     * fork. The counterparts of `Entity`s with static states that are not collectable, like walls, are only created once the `Entity`s of the fork
+     * are asked for, so forking takes time in the number of the other `Entity`s; forking a fork creates them first. The
+     * fork is paused and never starts the timer in fast-forward mode, so continuations can be tried by enabling
+     * fast-forward mode on the fork. A fork that is never changed serves as a snapshot of this `Simulation`.
+     * 
+     * NOTE: Entities are copied by creating them from their state, so subclasses of entities which do not create
+     * instances of themselves from their state only have that state in the fork.
+     * 
+     * @return The fork
+     */
+    public synchronized Simulation fork() {
+        this.forkStaticEntities();
+        Simulation fork = new Simulation();
+        fork._tty = this._tty;
+        fork._tickCount = this._tickCount;
+        fork._actionCount = this._actionCount;
+        fork._fastForward = this._fastForward;
+        fork._delay = this._delay;
+        fork._solidCells = this._solidCells.share();
+        fork._collectableCells = this._collectableCells.share();
+        fork._unforked = this._staticObjects;
+        this._staticShared = true;
+        fork._forkedEntities = new IdentityHashMap<>(this._entityObjects.size() * 2);
+        List<WorldObject> replaced = new ArrayList<>();
+        List<WorldObject> replacements = new ArrayList<>();
+        this._entityObjects.forEach((ent, wob) -> {
+            Entity copy = ent.forkInto(fork);
+            if (copy.stateRefersToEntity()) { // the world object must not show the state of the original
+                WorldObject own = new WorldObject(copy.state(), wob.column, wob.row, wob.z, wob.direction);
+                replaced.add(wob);
+                replacements.add(own);
+                wob = own;
+            }
+            fork._entityObjects.put(copy, wob);
+            fork._forkedEntities.put(ent, copy);
+            if (copy instanceof CollectableEntity) {
+                fork.addCollectable((CollectableEntity) copy, wob);
+            }
+        });
+        fork._tty = fork._tty.removeAll(replaced).addAll(replacements);
+        EventDispatcher.raise(new InitEvent(fork));
+        return fork;
+    }
+
+    /**
+     * Gets the counterpart in this fork of an `Entity` that was alive in the `Simulation` this fork was created from
+     * 
+     * @param original
+     *            The `Entity` of the forked `Simulation`
+     * @return The counterpart or null if the `Entity` was not alive when this fork was created or this `Simulation` is not
+     *         a fork
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <E extends Entity> E forkedEntity(E original) {
+        if ((this._unforked != null) && this._unforked.containsKey(original)) {
+            this.forkStaticEntities();
+        }
+        return this._forkedEntities == null ? null : (E) this._forkedEntities.get(original);
+    }
+
     /**
      * Pauses this `Simulation` if it is running
      *
@@ -87,7 +183,9 @@ public class Simulation {
         } finally {
             this._running = true;
             EventDispatcher.raise(new ResumeEvent(this));
-            this.startTimer();
+            if (!this._fastForward) {
+                this.startTimer();
+            }
         }
 
     }
@@ -99,6 +197,34 @@ public class Simulation {
         return this._running;
     }
 
+    /**
+     * Enables or disables the fast-forward mode of this `Simulation`.
+     * 
+     * In fast-forward mode the timer is stopped. An `Entity` that has to wait for a tick to act advances the tick count
+     * to that tick at once instead, so the `Simulation` progresses as fast as its `Entity`s act.
+     * 
+     * @param fastForward
+     *            Whether the fast-forward mode should be enabled
+     */
+    public void setFastForward(boolean fastForward) {
+        if (fastForward) {
+            this.stopTimer(); // not synchronized, since a pending tick needs the lock to finish
+        }
+        synchronized (this) {
+            this._fastForward = fastForward;
+            if (!fastForward && this._running && (this._timerTask == null)) {
+                this.startTimer();
+            }
+        }
+    }
+
+    /**
+     * @return true iff this `Simulation` is in fast-forward mode
+     */
+    public boolean fastForward() {
+        return this._fastForward;
+    }
+
     /**
      * Set the simulation territory
      *
@@ -108,13 +234,27 @@ public class Simulation {
     public void setTerritory(Territory tty) {
         SimulationEvent ev = new SetTerritoryEvent(this);
         synchronized (this) {
-            this._entityObjects.values().removeIf(wob -> !tty.contains(wob));
+            this.forkStaticEntities();
+            HashMap<Entity, WorldObject> entityObjects = new HashMap<>(this._entityObjects);
+            entityObjects.putAll(this._staticObjects);
+            entityObjects.values().removeIf(wob -> !tty.contains(wob));
             tty.forEach(wob -> {
-                if (!this._entityObjects.containsValue(wob)) {
-                    this._entityObjects.put(wob.state.createEntity(this), wob);
+                if (!entityObjects.containsValue(wob)) {
+                    entityObjects.put(wob.state.createEntity(this), wob);
                 }
             });
+            this._entityObjects.clear();
+            this._staticObjects = new HashMap<>();
+            this._staticShared = false;
+            entityObjects.forEach(this::putWorldObject);
             this._tty = tty;
+            this._solidCells.clear();
+            this._collectableCells.clear();
+            this._collectablesByCell.clear();
+            entityObjects.forEach(this::addToIndex);
+            if (this._pathFinder != null) {
+                this._pathFinder.reset();
+            }
             EventDispatcher.raise(ev);
         }
     }
@@ -123,7 +263,10 @@ public class Simulation {
      * @return All alive `Entity`s within this `Simulation`
      */
     public synchronized ArrayList<Entity> entities() {
-        return new ArrayList<>(this._entityObjects.keySet());
+        checkpoint();
+        ArrayList<Entity> result = new ArrayList<>();
+        this.entityStream().forEach(result::add);
+        return result;
     }
 
     /**
@@ -134,8 +277,9 @@ public class Simulation {
      * @return The matching `Entity`s
      */
     public synchronized ArrayList<Entity> entitiesWith(Predicate<Entity> pred) {
+        checkpoint();
         ArrayList<Entity> result = new ArrayList<>();
-        this._entityObjects.keySet().forEach(ent -> {
+        this.entityStream().forEach(ent -> {
             if (pred.test(ent)) {
                 result.add(ent);
             }
@@ -172,7 +316,7 @@ public class Simulation {
      */
     public synchronized ArrayList<CollectableEntity> collectablesWith(Predicate<CollectableEntity> pred) {
         ArrayList<CollectableEntity> result = new ArrayList<>();
-        this._entityObjects.keySet().stream().filter(ent -> ent instanceof CollectableEntity)
+        this.entityStream().filter(ent -> ent instanceof CollectableEntity)
                 .map(ent -> (CollectableEntity) ent).filter(pred).forEach(result::add);
         return result;
     }
@@ -187,10 +331,8 @@ public class Simulation {
      * @return The `CollectableEntity`s that are in the specified cell
      */
     public synchronized ArrayList<CollectableEntity> collectablesAt(int column, int row) {
-        ArrayList<CollectableEntity> result = new ArrayList<>();
-        this._entityObjects.keySet().stream().filter(ent -> ent instanceof CollectableEntity)
-                .filter(Entity.predicateIsAt(column, row)).map(ent -> (CollectableEntity) ent).forEach(result::add);
-        return result;
+        List<CollectableEntity> collectables = this._collectablesByCell.get(DistanceField.cellKey(column, row));
+        return collectables == null ? new ArrayList<>() : new ArrayList<>(collectables);
     }
 
     /**
@@ -202,7 +344,7 @@ public class Simulation {
      * @return true iff at least one alive `Entity` matches the specified predicate
      */
     public synchronized boolean containsWith(Predicate<Entity> pred) {
-        return this._entityObjects.keySet().stream().filter(pred).findFirst().isPresent();
+        return this.entityStream().filter(pred).findFirst().isPresent();
     }
 
     /**
@@ -227,7 +369,7 @@ public class Simulation {
      * @return true iff at least one alive `CollectableEntity` matches the specified predicate
      */
     public synchronized boolean containsCollectableWith(Predicate<CollectableEntity> pred) {
-        return this._entityObjects.keySet().stream().filter(ent -> ent instanceof CollectableEntity)
+        return this.entityStream().filter(ent -> ent instanceof CollectableEntity)
                 .map(ent -> (CollectableEntity) ent).filter(pred).findFirst().isPresent();
     }
 
@@ -241,8 +383,7 @@ public class Simulation {
      * @return true iff at least one alive `CollectableEntity` is in the specified cell
      */
     public synchronized boolean containsCollectableAt(int column, int row) {
-        return this._entityObjects.keySet().stream().filter(ent -> ent instanceof CollectableEntity)
-                .filter(Entity.predicateIsAt(column, row)).findFirst().isPresent();
+        return this._collectablesByCell.containsKey(DistanceField.cellKey(column, row));
     }
 
     /**
@@ -257,13 +398,27 @@ public class Simulation {
         return this._tty;
     }
 
+    /**
+     * Gets the `PathFinder` answering shortest path and reachability queries for this `Simulation`.
+     * 
+     * @return The `PathFinder` of this `Simulation`
+     */
+    public synchronized PathFinder pathFinder() {
+        if (this._pathFinder == null) {
+            this._pathFinder = new PathFinder(this);
+        }
+        return this._pathFinder;
+    }
+
     /**
      * @param ent
      *            An `Entity` that is alive within this `Simulation`
      * @return The `WorldObject` that represents the current state of the specified `Entity`
      */
     public WorldObject worldObject(Entity ent) {
-        return this._entityObjects.get(ent);
+        checkpoint();
+        WorldObject wob = this._entityObjects.get(ent);
+        return wob == null ? this._staticObjects.get(ent) : wob;
     }
 
     /**
@@ -281,16 +436,113 @@ public class Simulation {
      *            An event that will be synchronously raised at the end of this method call
      */
     public synchronized void setWorldObject(Entity ent, WorldObject newWob, SimulationEvent ev) {
+        checkpoint();
+        WorldObject oldWob;
         if (newWob == null) {
-            WorldObject oldWob = this._entityObjects.remove(ent);
+            oldWob = this.putWorldObject(ent, null);
             this._tty = oldWob == null ? this._tty : this._tty.remove(oldWob);
+            this.removeFromIndex(ent, oldWob);
         } else {
-            WorldObject oldWob = this._entityObjects.put(ent, newWob);
+            oldWob = this.putWorldObject(ent, newWob);
             this._tty = oldWob == null ? this._tty.add(newWob) : this._tty.replace(oldWob, newWob);
+            this.removeFromIndex(ent, oldWob);
+            this.addToIndex(ent, newWob);
+        }
+        ent.worldObjectChanged(newWob, ev);
+        ev._changes = Collections.singletonList(new Change(ent, oldWob, newWob));
+        if (this._pathFinder != null) {
+            this._pathFinder.changed(ev._changes);
         }
         EventDispatcher.raise(ev);
     }
 
+    /**
+     * Sets the `WorldObject`s that are currently representing the states of multiple `Entity`s in a single step. The
+     * `Territory` is only rebuilt once and only one event is raised.
+     * 
+     * @param changes
+     *            The `Entity`s mapped to the `WorldObject`s that will from now represent their states. `null` values are
+     *            allowed and have the same effect as in {@link #setWorldObject(Entity, WorldObject, SimulationEvent)}.
+     * @param ev
+     *            An event that will be synchronously raised at the end of this method call
+     */
+    public synchronized void setWorldObjects(Map<Entity, WorldObject> changes, SimulationEvent ev) {
+        checkpoint();
+        List<WorldObject> removed = new ArrayList<>(changes.size());
+        List<WorldObject> added = new ArrayList<>(changes.size());
+        List<Change> changeList = new ArrayList<>(changes.size());
+        changes.forEach((ent, newWob) -> {
+            WorldObject oldWob = this.putWorldObject(ent, newWob);
+            changeList.add(new Change(ent, oldWob, newWob));
+            if (oldWob != null) {
+                removed.add(oldWob);
+                this.removeFromIndex(ent, oldWob);
+            }
+            if (newWob != null) {
+                added.add(newWob);
+                this.addToIndex(ent, newWob);
+            }
+        });
+        this._tty = this._tty.removeAll(removed).addAll(added);
+        changes.forEach((ent, newWob) -> ent.worldObjectChanged(newWob, ev));
+        ev._changes = Collections.unmodifiableList(changeList);
+        if (this._pathFinder != null) {
+            this._pathFinder.changed(ev._changes);
+        }
+        EventDispatcher.raise(ev);
+    }
+
+    /**
+     * Checks whether a certain cell is blocked by a solid `Entity`
+     * 
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return true iff at least one alive solid `Entity` is in the specified cell
+     */
+    public synchronized boolean isSolidAt(int column, int row) {
+        checkpoint();
+        return this._solidCells.contains(column, row);
+    }
+
+    /**
+     * Casts a ray from a cell in a direction and gets the number of steps to the first cell that is blocked by a solid
+     * `Entity`. The start cell itself is not considered.
+     * 
+     * @param column
+     *            The column of the start cell
+     * @param row
+     *            The row of the start cell
+     * @param direction
+     *            The direction of the ray
+     * @return The number of steps to the first solid cell or -1 if there is no solid cell in that direction
+     */
+    public synchronized int distanceToSolid(int column, int row, Direction direction) {
+        checkpoint();
+        return this._solidCells.distance(column, row, direction);
+    }
+
+    /**
+     * Casts a ray from a cell in a direction and gets the number of steps to the first cell that contains an alive
+     * `CollectableEntity`. The ray stops at solid cells. The start cell itself is not considered.
+     * 
+     * @param column
+     *            The column of the start cell
+     * @param row
+     *            The row of the start cell
+     * @param direction
+     *            The direction of the ray
+     * @return The number of steps to the first cell with a `CollectableEntity` or -1 if there is none in sight
+     */
+    public synchronized int distanceToCollectable(int column, int row, Direction direction) {
+        checkpoint();
+        int collectable = this._collectableCells.distance(column, row, direction);
+        if (collectable == -1) return -1;
+        int solid = this._solidCells.distance(column, row, direction);
+        return ((solid == -1) || (collectable < solid)) ? collectable : -1;
+    }
+
     /**
      * @return The number of ticks that have happened in this `Simulation` since its creation
      */
@@ -298,8 +550,164 @@ public class Simulation {
         return this._tickCount;
     }
 
+    /**
+     * @return The number of actions the `Entity`s of this `Simulation` have performed since its creation
+     */
+    public int actionCount() {
+        return this._actionCount;
+    }
+
+    /**
+     * Counts an action performed by an `Entity`. Only called while holding the lock of this `Simulation`.
+     */
+    void actionPerformed() {
+        ++this._actionCount;
+    }
+
+    /**
+     * Advances the tick count of this `Simulation` to the given tick at once, raising a single `TickEvent`. Does nothing if
+     * that tick has already happened.
+     * 
+     * Used instead of waiting for the timer in fast-forward mode.
+     * 
+     * @param tick
+     *            The tick to advance to
+     */
+    synchronized void advanceTo(int tick) {
+        if (tick <= this._tickCount) return;
+        this._tickCount = tick;
+        EventDispatcher.raise(new TickEvent(this, this._tickCount));
+    }
+
+    /**
+     * Makes the current thread and all threads it starts from now on run a task of this `Simulation`. Such threads are
+     * stopped by {@link #checkpoint()} once this `Simulation` is cancelled.
+     */
+    public void attachCurrentThread() {
+        TASK_SIMULATION.set(this);
+    }
+
+    /**
+     * Undoes {@link #attachCurrentThread()} for the current thread.
+     */
+    public static void detachCurrentThread() {
+        TASK_SIMULATION.remove();
+    }
+
+    /**
+     * Cancels the task running in this `Simulation`. Its threads are stopped the next time they call into this
+     * `Simulation` and threads waiting for a tick stop waiting. Other threads, e.g. user interfaces, can still use this
+     * `Simulation`.
+     * 
+     * @param reason
+     *            Why the task is cancelled
+     */
+    public void cancel(String reason) {
+        this._cancelReason = reason == null ? "Cancelled." : reason;
+    }
+
+    /**
+     * @return Why the task of this `Simulation` was cancelled or null if it was not
+     */
+    public String cancelReason() {
+        return this._cancelReason;
+    }
+
+    /**
+     * Stops the current thread if it runs a task of a `Simulation` that was cancelled. Called on every interaction with a
+     * `Simulation`; does nothing for threads that do not run a task.
+     * 
+     * @throws SimulationCancelled
+     *             When the task of the current thread was cancelled
+     */
+    public static void checkpoint() {
+        Simulation sim = TASK_SIMULATION.get();
+        if (sim == null) return;
+        String reason = sim._cancelReason;
+        if (reason != null) throw new SimulationCancelled(reason);
+    }
+
     // private
 
+    /**
+     * @return The alive entities; creates the counterparts of all static entities in a fork first
+     */
+    private Stream<Entity> entityStream() {
+        this.forkStaticEntities();
+        return Stream.concat(this._entityObjects.keySet().stream(), this._staticObjects.keySet().stream());
+    }
+
+    /**
+     * Creates the counterparts of the static entities of the forked simulation, if this is a fork that did not do so
+     * yet.
+     */
+    private void forkStaticEntities() {
+        if (this._unforked == null) return;
+        this._unforked.forEach((ent, wob) -> {
+            Entity copy = ent.forkInto(this);
+            this._staticObjects.put(copy, wob);
+            this._forkedEntities.put(ent, copy);
+        });
+        this._unforked = null;
+    }
+
+    /**
+     * Sets the world object of an entity in the map matching its state.
+     * 
+     * @return The previous world object of the entity or null if it was not alive
+     */
+    private WorldObject putWorldObject(Entity ent, WorldObject newWob) {
+        WorldObject oldWob = this._entityObjects.remove(ent);
+        if ((oldWob == null) && this._staticObjects.containsKey(ent)) {
+            this.ownStaticObjects();
+            oldWob = this._staticObjects.remove(ent);
+        }
+        if (newWob == null) return oldWob;
+        if (newWob.state.isStatic() && !(ent instanceof CollectableEntity)) {
+            this.ownStaticObjects();
+            this._staticObjects.put(ent, newWob);
+        } else {
+            this._entityObjects.put(ent, newWob);
+        }
+        return oldWob;
+    }
+
+    private void ownStaticObjects() {
+        if (!this._staticShared) return;
+        this._staticObjects = new HashMap<>(this._staticObjects);
+        this._staticShared = false;
+    }
+
+    private void addToIndex(Entity ent, WorldObject wob) {
+        if (wob.state.isSolid()) {
+            this._solidCells.add(wob.column, wob.row);
+        }
+        if (ent instanceof CollectableEntity) {
+            this._collectableCells.add(wob.column, wob.row);
+            this.addCollectable((CollectableEntity) ent, wob);
+        }
+    }
+
+    private void removeFromIndex(Entity ent, WorldObject wob) {
+        if (wob == null) return;
+        if (wob.state.isSolid()) {
+            this._solidCells.remove(wob.column, wob.row);
+        }
+        if (ent instanceof CollectableEntity) {
+            this._collectableCells.remove(wob.column, wob.row);
+            long key = DistanceField.cellKey(wob.column, wob.row);
+            List<CollectableEntity> collectables = this._collectablesByCell.get(key);
+            if ((collectables != null) && collectables.remove(ent) && collectables.isEmpty()) {
+                this._collectablesByCell.remove(key);
+            }
+        }
+    }
+
+    private void addCollectable(CollectableEntity ent, WorldObject wob) {
+        this._collectablesByCell.computeIfAbsent(DistanceField.cellKey(wob.column, wob.row), key -> new ArrayList<>(1))
+                .add(ent);
+    }
+
     private void init(Territory tty) {
         this.setTerritory(tty);
         EventDispatcher.raise(new InitEvent(this));
@@ -341,14 +749,62 @@ public class Simulation {
         EventDispatcher.raise(new TickEvent(this, this._tickCount), afterwards);
     }
 
+    // Exceptions
+
+    /**
+     * Exception thrown into the threads of a cancelled task
+     */
+    public static class SimulationCancelled extends RuntimeException {
+        private static final long serialVersionUID = 2815364925581038174L;
+
+        /**
+         * Creates a new simulation cancelled exception
+         * 
+         * @param reason
+         *            Why the task was cancelled
+         */
+        public SimulationCancelled(String reason) {
+            super(reason);
+        }
+    }
+
     // Events
 
+    /**
+     * A change of the `WorldObject` of an `Entity`
+     */
+    public static final class Change {
+        /** The changed entity. */
+        public final Entity entity;
+        /** The world object before the change or null if the entity was not alive. */
+        public final WorldObject before;
+        /** The world object after the change or null if the entity was despawned. */
+        public final WorldObject after;
+
+        /**
+         * Creates a new change
+         * 
+         * @param entity
+         *            The changed entity
+         * @param before
+         *            The world object before the change or null
+         * @param after
+         *            The world object after the change or null
+         */
+        Change(Entity entity, WorldObject before, WorldObject after) {
+            this.entity = entity;
+            this.before = before;
+            this.after = after;
+        }
+    }
+
     /**
      * A simulation event
      */
     public static abstract class SimulationEvent implements Event {
         /** The simulation, this event is for. */
         public final Simulation simulation;
+        private List<Change> _changes = Collections.emptyList();
 
         /**
          * Creates a new simulation event for the given simulation
@@ -359,6 +815,27 @@ public class Simulation {
         SimulationEvent(Simulation sim) {
             this.simulation = sim;
         }
+
+        /**
+         * Get the changes of world objects this event describes. They are set by the `Simulation` right before the event
+         * is raised.
+         * 
+         * @return The changes in the order they were made; empty if this event did not change any world object
+         */
+        public List<Change> changes() {
+            return this._changes;
+        }
+
+        /**
+         * Get the lock of this event. The events of one simulation are handled one after another, while the events of
+         * different simulations can be handled at the same time.
+         * 
+         * @return The simulation of this event
+         */
+        @Override
+        public Object dispatchLock() {
+            return this.simulation;
+        }
     }
 
     /**
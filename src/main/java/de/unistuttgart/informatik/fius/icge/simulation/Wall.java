@@ -27,6 +27,11 @@ public class Wall extends Entity {
         public boolean isSolid() {
             return true;
         }
+
+        @Override
+        public boolean isStatic() {
+            return true;
+        }
     }
 
     /**
@@ -7,22 +7,34 @@
 
 package de.unistuttgart.informatik.fius.icge.simulation.inspection;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.Map.Entry;
 
 /**
  * Represents all data available for the inspection for a class
+ * <p>
+ * All accessors are resolved to method handles when the inspection data is created, so reading, writing and invoking
+ * only costs a direct call afterwards.
  * 
  * @author Tim Neumann
  */
 public class InspectionData {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    
     private final Class<?> c;
     
     private final Map<String, AttributeInspectionPoint> inspectableAttributes;
     private final Map<String, Method> inspectableMethods;
+    private final Map<String, MethodHandle> methodInvokers;
     
     /**
      * Creates a new inspection data object for the given class
@@ -34,6 +46,7 @@ public class InspectionData {
         this.c = cls;
         this.inspectableAttributes = new HashMap<>();
         this.inspectableMethods = new HashMap<>();
+        this.methodInvokers = new HashMap<>();
         this.initAttributes();
         this.initMethods();
     }
@@ -52,7 +65,7 @@ public class InspectionData {
         if (p != null) {
             try {
                 return p.getValue(obj);
-            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+            } catch (RuntimeException e) {
                 e.printStackTrace();
             }
         }
@@ -76,7 +89,7 @@ public class InspectionData {
             try {
                 p.setValue(obj, value);
                 return true;
-            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+            } catch (RuntimeException e) {
                 e.printStackTrace();
             }
         }
@@ -157,11 +170,13 @@ public class InspectionData {
      * @return The return value.
      */
     public Object invokeMethod(Object obj, String methodName, Object... args) {
-        Method m = this.inspectableMethods.get(methodName);
-        if (m == null) throw new IllegalStateException("No such method!");
+        MethodHandle invoker = this.methodInvokers.get(methodName);
+        if (invoker == null) throw new IllegalStateException("No such method!");
         try {
-            return m.invoke(obj, args);
-        } catch (Exception e) {
+            return invoker.invokeExact(obj, args);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
             e.printStackTrace();
             throw new IllegalStateException("Invokation didn't work", e);
         }
@@ -172,7 +187,9 @@ public class InspectionData {
         
         for (Method m : methods) {
             m.setAccessible(true);
-            this.inspectableMethods.put(this.getDsiplayNameForInspectionMethod(m), m);
+            String name = this.getDsiplayNameForInspectionMethod(m);
+            this.inspectableMethods.put(name, m);
+            this.methodInvokers.put(name, createInvoker(m));
         }
     }
     
@@ -225,6 +242,22 @@ public class InspectionData {
         
     }
     
+    private static MethodHandle createInvoker(Method m) {
+        MethodHandle handle = unreflect(m);
+        if (Modifier.isStatic(m.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        return handle.asSpreader(Object[].class, m.getParameterCount()).asType(INVOKER_TYPE);
+    }
+    
+    private static MethodHandle unreflect(Method m) {
+        try {
+            return LOOKUP.unreflect(m);
+        } catch (IllegalAccessException e) {
+            throw new InspectionPointException("Method is not accessible! : " + m.getName(), e);
+        }
+    }
+    
     private boolean isGetter(Method met) {
         return (met.getParameterTypes().length == 0) && (met.getReturnType() != Void.TYPE);
     }
@@ -309,10 +342,8 @@ public class InspectionData {
             primitiveToWrapperMap.put(Boolean.TYPE, Boolean.class);
             primitiveToWrapperMap.put(Void.TYPE, Void.class);
         }
-        private final boolean usesField;
-        private final Field f;
-        private final Method getter;
-        private final Method setter;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
         private final Class<?> type;
         private final boolean readOnly;
         
@@ -323,28 +354,26 @@ public class InspectionData {
          *            The field for the inspection point.
          */
         public AttributeInspectionPoint(Field field) {
-            this.usesField = true;
-            this.f = field;
-            this.getter = null;
-            this.setter = null;
             this.type = convertTypeToWrappers(field.getType());
             this.readOnly = field.getAnnotation(InspectionAttribute.class).readOnly();
+            try {
+                this.getter = LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
+                this.setter = this.readOnly ? null : LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new InspectionPointException("Field is not accessible! : " + field.getName(), e);
+            }
         }
         
         public AttributeInspectionPoint(Method getter) {
-            this.usesField = false;
-            this.f = null;
-            this.getter = getter;
+            this.getter = unreflect(getter).asType(GETTER_TYPE);
             this.setter = null;
             this.type = convertTypeToWrappers(getter.getReturnType());
             this.readOnly = true;
         }
         
         public AttributeInspectionPoint(Method getter, Method setter) {
-            this.usesField = false;
-            this.f = null;
-            this.getter = getter;
-            this.setter = setter;
+            this.getter = unreflect(getter).asType(GETTER_TYPE);
+            this.setter = unreflect(setter).asType(SETTER_TYPE);
             this.type = convertTypeToWrappers(getter.getReturnType());
             this.readOnly = false;
         }
@@ -354,20 +383,26 @@ public class InspectionData {
             return primitiveToWrapperMap.get(cls);
         }
         
-        public Object getValue(Object obj) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-            if (this.usesField) return this.f.get(obj);
-            return this.getter.invoke(obj);
+        public Object getValue(Object obj) {
+            try {
+                return this.getter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new InspectionPointException(e);
+            }
         }
         
-        public void setValue(Object obj, Object value)
-                throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+        public void setValue(Object obj, Object value) {
             if (this.readOnly) throw new InspectionPointException("Attribute is read only.");
             if (!this.type.isAssignableFrom(value.getClass()))
                 throw new IllegalArgumentException("Not the correct attribute type.");
-            if (this.usesField) {
-                this.f.set(obj, value);
-            } else {
-                this.setter.invoke(obj, value);
+            try {
+                this.setter.invokeExact(obj, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new InspectionPointException(e);
             }
         }
         
@@ -7,41 +7,30 @@
 
 package de.unistuttgart.informatik.fius.icge.simulation.inspection;
 
-import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import de.unistuttgart.informatik.fius.icge.ClassFinder;
 import de.unistuttgart.informatik.fius.icge.simulation.Entity;
 
 /**
  * A class for managing the inspections
+ * <p>
+ * The inspection data of a class is created the first time an entity of that class is inspected and cached from then
+ * on.
  * 
  * @author Tim Neumann
  */
 public class InspectionManager {
     
-    private final Map<Class<?>, InspectionData> inspectableClasses = new HashMap<>();
+    private final ConcurrentHashMap<Class<?>, InspectionData> inspectableClasses = new ConcurrentHashMap<>();
     
     /**
      * Create a new inspection manager.
      */
     public InspectionManager() {
-        try {
-            List<Class<?>> classes = ClassFinder.getClassesInClassLoader(c -> true);
-            
-            for (Class<?> cls : classes) {
-                InspectionData d = new InspectionData(cls);
-                if (d.hasAnyInspectableElements()) {
-                    this.inspectableClasses.put(cls, d);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // inspection data is created on demand
     }
     
     /**
@@ -52,7 +41,7 @@ public class InspectionManager {
      * @return A List of attribute names.
      */
     public List<String> getAttributeNamesOfEntity(Entity entity) {
-        InspectionData d = this.inspectableClasses.get(entity.getClass());
+        InspectionData d = this.getInspectionData(entity.getClass());
         if (d == null) return Collections.emptyList();
         return d.getAttributeNames();
     }
@@ -65,7 +54,7 @@ public class InspectionManager {
      * @return A List of method names.
      */
     public List<String> getMethodNamesOfEntity(Entity entity) {
-        InspectionData d = this.inspectableClasses.get(entity.getClass());
+        InspectionData d = this.getInspectionData(entity.getClass());
         if (d == null) return Collections.emptyList();
         return d.getMethodNames();
     }
@@ -80,7 +69,7 @@ public class InspectionManager {
      * @return Whether the attribute is writable.
      */
     public boolean isAttributeEditable(Entity entity, String attributeName) {
-        InspectionData d = this.inspectableClasses.get(entity.getClass());
+        InspectionData d = this.getInspectionData(entity.getClass());
         if (d == null) return false;
         return !d.isAttributeReadOnly(attributeName);
     }
@@ -95,7 +84,7 @@ public class InspectionManager {
      * @return The type of the attribute.
      */
     public Class<?> getAttributeType(Entity entity, String attributeName) {
-        InspectionData d = this.inspectableClasses.get(entity.getClass());
+        InspectionData d = this.getInspectionData(entity.getClass());
         if (d == null) return null;
         return d.getAttributeType(attributeName);
     }
@@ -110,7 +99,7 @@ public class InspectionManager {
      * @return The value or null if it didn't work.
      */
     public Object getAttributeValue(Entity entity, String attributeName) {
-        InspectionData d = this.inspectableClasses.get(entity.getClass());
+        InspectionData d = this.getInspectionData(entity.getClass());
         if (d == null) return null;
         return d.getAttributeValue(entity, attributeName);
     }
@@ -127,7 +116,7 @@ public class InspectionManager {
      * @return Whether it worked.
      */
     public boolean setAttributeValue(Entity entity, String attributeName, Object value) {
-        InspectionData d = this.inspectableClasses.get(entity.getClass());
+        InspectionData d = this.getInspectionData(entity.getClass());
         if (d == null) return false;
         return d.setAttributeValue(entity, attributeName, value);
     }
@@ -142,7 +131,7 @@ public class InspectionManager {
      * @return The method detail.
      */
     public Method getMethodDetail(Entity entity, String methodName) {
-        InspectionData d = this.inspectableClasses.get(entity.getClass());
+        InspectionData d = this.getInspectionData(entity.getClass());
         if (d == null) return null;
         return d.getMethodByName(methodName);
     }
@@ -162,9 +151,20 @@ public class InspectionManager {
      *             When anything goes wrong.
      */
     public Object invokeMethod(Entity entity, String methodName, Object... args) {
-        InspectionData d = this.inspectableClasses.get(entity.getClass());
+        InspectionData d = this.getInspectionData(entity.getClass());
         if (d == null) throw new IllegalStateException("Not a known inspectable class");
         return d.invokeMethod(entity, methodName, args);
     }
     
+    /**
+     * Get the inspection data for the given class, creating it if this class is inspected for the first time.
+     * 
+     * @param cls
+     *            The class to get the inspection data for
+     * @return The inspection data or null if the class has no inspectable elements
+     */
+    private InspectionData getInspectionData(Class<?> cls) {
+        InspectionData d = this.inspectableClasses.computeIfAbsent(cls, InspectionData::new);
+        return d.hasAnyInspectableElements() ? d : null;
+    }
 }
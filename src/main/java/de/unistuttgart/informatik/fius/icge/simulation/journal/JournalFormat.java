@@ -0,0 +1,86 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import de.unistuttgart.informatik.fius.icge.simulation.Entity.DespawnEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Entity.SpawnEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Entity.TeleportEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.GreedyEntity.CollectEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.GreedyEntity.DropEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.MovableEntity.MoveEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.MovableEntity.TurnLeftEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.journal.SimulationReplay.ActionType;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
+
+/**
+ * The binary format of simulation journals.
+ * <p>
+ * A journal starts with {@link #MAGIC} followed by records. Every record consists of its type (byte), the length of its
+ * payload (int) and the payload, which always starts with the tick of the record (int). The payloads are:
+ * <ul>
+ * <li>{@link #KEYFRAME}: the number of entities (int), then for each entity its id (int), definition and placement</li>
+ * <li>{@link #CHANGES}: the {@link ActionType} (byte), the id of the acting entity (int) or -1, the number of changes
+ * (int), then for each change the id of the entity (int) and one of {@link #REMOVED}, {@link #PLACED} followed by the placement or {@link #DEFINED} followed by
+ * the definition and placement</li>
+ * <li>{@link #MESSAGE}: the id of the entity (int) and the message (string)</li>
+ * </ul>
+ * A definition is the sprite id (string) and whether the entity is solid (byte). Definitions are written on the first
+ * placement of an entity after the last keyframe. A placement is the column (int), row (int), z (float) and direction
+ * (byte) of an entity. Strings are written as their length (int) and their UTF-8 bytes.
+ */
+final class JournalFormat {
+    /** The first bytes of every journal: "ICGEJRN" and the version. */
+    static final long MAGIC = 0x4943474A524E0002L;
+
+    /** The size of the header of a record: type and length. */
+    static final int RECORD_HEADER = 5;
+
+    static final byte KEYFRAME = 1;
+    static final byte CHANGES = 2;
+    static final byte MESSAGE = 3;
+
+    static final byte REMOVED = 0;
+    static final byte PLACED = 1;
+    static final byte DEFINED = 2;
+
+    private static final ActionType[] ACTION_TYPES = ActionType.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private JournalFormat() {
+        //hide constructor
+    }
+
+    static ActionType actionType(SimulationEvent ev) {
+        if (ev instanceof SpawnEvent) return ActionType.SPAWN;
+        if (ev instanceof DespawnEvent) return ActionType.DESPAWN;
+        if (ev instanceof MoveEvent) return ActionType.MOVE;
+        if (ev instanceof TurnLeftEvent) return ActionType.TURN_LEFT;
+        if (ev instanceof TeleportEvent) return ActionType.TELEPORT;
+        if (ev instanceof CollectEvent) return ActionType.COLLECT;
+        if (ev instanceof DropEvent) return ActionType.DROP;
+        return ActionType.OTHER;
+    }
+
+    static ActionType actionType(byte ordinal) {
+        return ACTION_TYPES[ordinal];
+    }
+
+    static Direction direction(byte ordinal) {
+        return DIRECTIONS[ordinal];
+    }
+
+    static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
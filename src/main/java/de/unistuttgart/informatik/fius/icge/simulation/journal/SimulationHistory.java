@@ -0,0 +1,248 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation.journal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
+import de.unistuttgart.informatik.fius.icge.event.EventListener;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.Change;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SetTerritoryEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.TerritoryDelta;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+
+/**
+ * Keeps the recent territories of a simulation in memory, so that they can be looked at again.
+ * <p>
+ * The history stores a keyframe (the whole territory) every {@link #DEFAULT_KEYFRAME_INTERVAL} changes and a
+ * {@link TerritoryDelta} for every change in between. Since territories and world objects are immutable, they are shared
+ * with the simulation and not copied. A territory is reconstructed from the last keyframe before it or, when scrubbing,
+ * from the territory looked at before. Once the history refers to more world objects than allowed, the oldest keyframes
+ * and their deltas are dropped.
+ */
+public class SimulationHistory implements AutoCloseable {
+    /** The default number of changes between two keyframes. */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 256;
+    /** The default maximum number of world objects referred to by the history. */
+    public static final int DEFAULT_MAX_WORLD_OBJECTS = 1 << 20;
+
+    private final Simulation _sim;
+    private final int _keyframeInterval;
+    private final long _maxWorldObjects;
+    private final EventListener _listener;
+
+    private final ArrayDeque<Segment> _segments = new ArrayDeque<>();
+    private long _size;
+
+    /** The segment the cursor is in or null if there is no cursor. */
+    private Segment _cursorSegment;
+    /** The number of deltas of the cursor segment applied to the cursor. */
+    private int _cursorDeltas;
+    private final Set<WorldObject> _cursor = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Territory _cursorTerritory;
+
+    /**
+     * Starts keeping the history of a simulation with the default settings
+     *
+     * @param sim
+     *            The simulation
+     */
+    public SimulationHistory(Simulation sim) {
+        this(sim, DEFAULT_KEYFRAME_INTERVAL, DEFAULT_MAX_WORLD_OBJECTS);
+    }
+
+    /**
+     * Starts keeping the history of a simulation
+     *
+     * @param sim
+     *            The simulation
+     * @param keyframeInterval
+     *            The number of changes between two keyframes
+     * @param maxWorldObjects
+     *            The maximum number of world objects referred to by the keyframes and deltas; the latest keyframe is
+     *            always kept
+     */
+    public SimulationHistory(Simulation sim, int keyframeInterval, long maxWorldObjects) {
+        if (keyframeInterval < 1) throw new IllegalArgumentException("The keyframe interval must be positive.");
+        this._sim = sim;
+        this._keyframeInterval = keyframeInterval;
+        this._maxWorldObjects = maxWorldObjects;
+        synchronized (sim) {
+            this.addKeyframe(sim.tickCount(), sim.territory());
+            this._listener = EventDispatcher.addListener(SimulationEvent.class, ev -> {
+                if (((SimulationEvent) ev).simulation == this._sim) {
+                    this.record((SimulationEvent) ev);
+                }
+                return true;
+            });
+        }
+    }
+
+    /**
+     * @return The simulation of this history
+     */
+    public Simulation simulation() {
+        return this._sim;
+    }
+
+    /**
+     * @return The first tick whose territory is still known
+     */
+    public synchronized int earliestTick() {
+        return this._segments.getFirst().tick;
+    }
+
+    /**
+     * Get the territory of the simulation at the end of the given tick
+     *
+     * @param tick
+     *            The tick; it must not be before the {@link #earliestTick()}
+     * @return The territory
+     */
+    public synchronized Territory territoryAt(int tick) {
+        Segment segment = null;
+        for (Iterator<Segment> it = this._segments.descendingIterator(); it.hasNext();) {
+            Segment candidate = it.next();
+            if (candidate.tick <= tick) {
+                segment = candidate;
+                break;
+            }
+        }
+        if (segment == null) throw new IllegalArgumentException("The tick " + tick + " is no longer known.");
+        int deltas = segment.deltasUntil(tick);
+        if (deltas == 0) return segment.keyframe;
+        if ((segment == this._cursorSegment) && (deltas == this._cursorDeltas)) return this._cursorTerritory;
+
+        if ((segment != this._cursorSegment) || (deltas < Math.abs(this._cursorDeltas - deltas))) {
+            this._cursorSegment = segment;
+            this._cursorDeltas = 0;
+            this._cursor.clear();
+            segment.keyframe.forEach(this._cursor::add);
+        }
+        while (this._cursorDeltas < deltas) {
+            segment.deltas.get(this._cursorDeltas++).applyTo(this._cursor);
+        }
+        while (this._cursorDeltas > deltas) {
+            segment.deltas.get(--this._cursorDeltas).revertOn(this._cursor);
+        }
+        this._cursorTerritory = new Territory().addAll(this._cursor);
+        return this._cursorTerritory;
+    }
+
+    /**
+     * Stops keeping the history. The known territories can still be looked at.
+     */
+    @Override
+    public void close() {
+        EventDispatcher.removeListener(this._listener);
+    }
+
+    // private
+
+    private synchronized void record(SimulationEvent ev) {
+        if (ev instanceof SetTerritoryEvent) {
+            this.addKeyframe(this._sim.tickCount(), this._sim.territory());
+            return;
+        }
+        List<Change> changes = ev.changes();
+        if (changes.isEmpty()) return;
+        Segment last = this._segments.getLast();
+        if (last.deltas.size() >= this._keyframeInterval) {
+            this.addKeyframe(this._sim.tickCount(), this._sim.territory());
+            return; // the keyframe already contains the change
+        }
+        List<WorldObject> removed = new ArrayList<>(changes.size());
+        List<WorldObject> added = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            if (change.before != null) {
+                removed.add(change.before);
+            }
+            if (change.after != null) {
+                added.add(change.after);
+            }
+        }
+        TerritoryDelta delta = new TerritoryDelta(removed, added);
+        last.add(this._sim.tickCount(), delta);
+        this._size += delta.size();
+        this.evict();
+    }
+
+    private void addKeyframe(int tick, Territory tty) {
+        Segment segment = new Segment(tick, tty);
+        this._segments.addLast(segment);
+        this._size += segment.size;
+        this.evict();
+    }
+
+    private void evict() {
+        while ((this._size > this._maxWorldObjects) && (this._segments.size() > 1)) {
+            Segment oldest = this._segments.removeFirst();
+            this._size -= oldest.size;
+            for (TerritoryDelta delta : oldest.deltas) {
+                this._size -= delta.size();
+            }
+            if (oldest == this._cursorSegment) {
+                this._cursorSegment = null;
+                this._cursor.clear();
+                this._cursorTerritory = null;
+            }
+        }
+    }
+
+    /**
+     * A keyframe and the deltas after it
+     */
+    private static class Segment {
+        final int tick;
+        final Territory keyframe;
+        final int size;
+        final ArrayList<TerritoryDelta> deltas = new ArrayList<>();
+        /** The ticks of the deltas. */
+        int[] ticks = new int[16];
+
+        Segment(int tick, Territory keyframe) {
+            this.tick = tick;
+            this.keyframe = keyframe;
+            this.size = keyframe.worldObjects().size();
+        }
+
+        void add(int tick, TerritoryDelta delta) {
+            if (this.deltas.size() == this.ticks.length) {
+                this.ticks = Arrays.copyOf(this.ticks, this.ticks.length * 2);
+            }
+            this.ticks[this.deltas.size()] = tick;
+            this.deltas.add(delta);
+        }
+
+        /**
+         * @return The number of deltas that happened before or at the given tick
+         */
+        int deltasUntil(int tick) {
+            int low = 0, high = this.deltas.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.ticks[mid] <= tick) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
+import de.unistuttgart.informatik.fius.icge.event.EventListener;
+import de.unistuttgart.informatik.fius.icge.simulation.Entity;
+import de.unistuttgart.informatik.fius.icge.simulation.Entity.EntityEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Entity.MessageEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.Change;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SetTerritoryEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+
+/**
+ * Records every change of a simulation into a binary journal, which can be played back by a {@link SimulationReplay}.
+ * <p>
+ * The recorder only looks at the changes of world objects and the messages of the entities, so the journal can be
+ * replayed without the code that caused them. Every {@link #DEFAULT_KEYFRAME_TICKS} ticks the whole state is written as
+ * a keyframe, so that replays can seek quickly.
+ * <p>
+ * The records are encoded on the thread raising the events and written to the file by a background thread. The
+ * simulation never waits for the file: when the writer falls behind, additional buffers are allocated, which are
+ * dropped again once they are written.
+ */
+public class SimulationRecorder implements AutoCloseable {
+    /** The default number of ticks between two keyframes. */
+    public static final int DEFAULT_KEYFRAME_TICKS = 500;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BUFFER_COUNT = 4;
+
+    private final Simulation _sim;
+    private final int _keyframeTicks;
+    private final FileChannel _channel;
+    private final ExecutorService _writer;
+    private final BlockingQueue<ByteBuffer> _free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final EventListener _listener;
+
+    private final IdentityHashMap<Entity, Integer> _ids = new IdentityHashMap<>();
+    /** The current world objects of the alive entities by their ids. */
+    private final Map<Integer, WorldObject> _state = new LinkedHashMap<>();
+    /** The ids of the entities whose definition was written since the last keyframe. */
+    private final Set<Integer> _defined = new HashSet<>();
+    private int _lastKeyframeTick;
+
+    private ByteBuffer _buffer;
+    private ByteBuffer _record = ByteBuffer.allocate(4096);
+    private boolean _closed = false;
+    private volatile IOException _error;
+
+    /**
+     * Starts recording a simulation with the default keyframe interval
+     *
+     * @param sim
+     *            The simulation to record
+     * @param file
+     *            The file to write the journal to; it is overwritten
+     * @throws IOException
+     *             When the file can not be opened
+     */
+    public SimulationRecorder(Simulation sim, Path file) throws IOException {
+        this(sim, file, DEFAULT_KEYFRAME_TICKS);
+    }
+
+    /**
+     * Starts recording a simulation
+     *
+     * @param sim
+     *            The simulation to record
+     * @param file
+     *            The file to write the journal to; it is overwritten
+     * @param keyframeTicks
+     *            The number of ticks between two keyframes
+     * @throws IOException
+     *             When the file can not be opened
+     */
+    public SimulationRecorder(Simulation sim, Path file, int keyframeTicks) throws IOException {
+        if (keyframeTicks < 1) throw new IllegalArgumentException("The keyframe interval must be positive.");
+        this._sim = sim;
+        this._keyframeTicks = keyframeTicks;
+        this._channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this._writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "simulation-recorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < BUFFER_COUNT; ++i) {
+            this._free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+        this._buffer = this._free.remove();
+        this._buffer.putLong(JournalFormat.MAGIC);
+
+        synchronized (sim) {
+            this.readState();
+            this.writeKeyframe();
+            this._listener = EventDispatcher.addListener(SimulationEvent.class, ev -> {
+                if (((SimulationEvent) ev).simulation == this._sim) {
+                    this.record((SimulationEvent) ev);
+                }
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Stops recording, writes a last keyframe and waits until everything is written.
+     *
+     * @throws IOException
+     *             When writing the journal failed
+     */
+    @Override
+    public void close() throws IOException {
+        EventDispatcher.removeListener(this._listener); // outside of the lock, since events are recorded holding it
+        synchronized (this) {
+            if (this._closed) return;
+            this.writeKeyframe(); // marks the last tick
+            this._closed = true;
+            this.submit(this._buffer);
+            this._buffer = null;
+        }
+        this._writer.shutdown();
+        try {
+            this._writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this._channel.close();
+        }
+        if (this._error != null) throw this._error;
+    }
+
+    private synchronized void record(SimulationEvent ev) {
+        if (this._closed) return;
+        if (ev instanceof SetTerritoryEvent) {
+            this.readState();
+            this.writeKeyframe();
+            return;
+        }
+        if (ev instanceof MessageEvent) {
+            MessageEvent me = (MessageEvent) ev;
+            this.begin(JournalFormat.MESSAGE);
+            this.putInt(this.id(me.entity));
+            this.putString(me.message);
+            this.end();
+            return;
+        }
+        List<Change> changes = ev.changes();
+        if (changes.isEmpty()) return;
+        if ((this._sim.tickCount() - this._lastKeyframeTick) >= this._keyframeTicks) {
+            this.writeKeyframe();
+        }
+
+        this.begin(JournalFormat.CHANGES);
+        this.putByte((byte) JournalFormat.actionType(ev).ordinal());
+        this.putInt(ev instanceof EntityEvent ? this.id(((EntityEvent) ev).entity) : -1);
+        this.putInt(changes.size());
+        for (Change change : changes) {
+            int id = this.id(change.entity);
+            this.putInt(id);
+            if (change.after == null) {
+                this._state.remove(id);
+                this.putByte(JournalFormat.REMOVED);
+            } else {
+                this._state.put(id, change.after);
+                if (this._defined.add(id)) {
+                    this.putByte(JournalFormat.DEFINED);
+                    this.putDefinition(change.after);
+                } else {
+                    this.putByte(JournalFormat.PLACED);
+                }
+                this.putPlacement(change.after);
+            }
+        }
+        this.end();
+    }
+
+    /**
+     * Reads the current state of the simulation. Only called while holding the lock of the simulation.
+     */
+    private void readState() {
+        this._state.clear();
+        for (Entity ent : this._sim.entities()) {
+            this._state.put(this.id(ent), this._sim.worldObject(ent));
+        }
+    }
+
+    private void writeKeyframe() {
+        this._lastKeyframeTick = this._sim.tickCount();
+        this._defined.clear();
+        this.begin(JournalFormat.KEYFRAME);
+        this.putInt(this._state.size());
+        this._state.forEach((id, wob) -> {
+            this._defined.add(id);
+            this.putInt(id);
+            this.putDefinition(wob);
+            this.putPlacement(wob);
+        });
+        this.end();
+    }
+
+    private int id(Entity ent) {
+        Integer id = this._ids.get(ent);
+        if (id == null) {
+            id = this._ids.size();
+            this._ids.put(ent, id);
+        }
+        return id;
+    }
+
+    // encoding
+
+    private void begin(byte type) {
+        this._record.clear();
+        this.putByte(type);
+        this.putInt(0); // length, set by end()
+        this.putInt(this._sim.tickCount());
+    }
+
+    private void end() {
+        this._record.putInt(1, this._record.position() - JournalFormat.RECORD_HEADER);
+        this._record.flip();
+        if (this._record.remaining() > this._buffer.remaining()) {
+            this.submit(this._buffer);
+            this._buffer = this.take();
+        }
+        if (this._record.remaining() > this._buffer.remaining()) {
+            ByteBuffer large = ByteBuffer.allocate(this._record.remaining()); // larger than a whole buffer
+            large.put(this._record);
+            this.submit(large);
+        } else {
+            this._buffer.put(this._record);
+        }
+    }
+
+    private void putDefinition(WorldObject wob) {
+        this.putString(wob.state.spriteId());
+        this.putByte((byte) (wob.state.isSolid() ? 1 : 0));
+    }
+
+    private void putPlacement(WorldObject wob) {
+        this.ensure(13);
+        this._record.putInt(wob.column).putInt(wob.row).putFloat(wob.z).put((byte) wob.direction.ordinal());
+    }
+
+    private void putByte(byte value) {
+        this.ensure(1);
+        this._record.put(value);
+    }
+
+    private void putInt(int value) {
+        this.ensure(4);
+        this._record.putInt(value);
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.ensure(4 + bytes.length);
+        this._record.putInt(bytes.length).put(bytes);
+    }
+
+    private void ensure(int bytes) {
+        if (this._record.remaining() >= bytes) return;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(this._record.capacity() * 2, this._record.position() + bytes));
+        this._record.flip();
+        larger.put(this._record);
+        this._record = larger;
+    }
+
+    // writing
+
+    private void submit(ByteBuffer buffer) {
+        buffer.flip();
+        this._writer.execute(() -> {
+            try {
+                while (buffer.hasRemaining() && (this._error == null)) {
+                    this._channel.write(buffer);
+                }
+            } catch (IOException e) {
+                this._error = e;
+            }
+            if (buffer.isDirect()) {
+                buffer.clear();
+                this._free.offer(buffer);
+            }
+        });
+    }
+
+    private ByteBuffer take() {
+        ByteBuffer buffer = this._free.poll();
+        return buffer == null ? ByteBuffer.allocate(BUFFER_SIZE) : buffer; // the writer fell behind
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation.journal;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import de.unistuttgart.informatik.fius.icge.simulation.Entity;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+import de.unistuttgart.informatik.fius.icge.territory.EntityState;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+
+/**
+ * Plays back a journal written by a {@link SimulationRecorder}.
+ * <p>
+ * The replay reconstructs the territory at any tick without running any code of the recorded simulation. The entities
+ * of the reconstructed territories only know their sprite and whether they are solid. Seeking starts at the last
+ * keyframe before the requested tick; playing forwards continues from the current position.
+ * <p>
+ * The journal is mapped into memory, so it must not be larger than 2 GiB.
+ */
+public class SimulationReplay implements AutoCloseable {
+
+    private final FileChannel _channel;
+    private final MappedByteBuffer _data;
+    /** The positions of the keyframe records. */
+    private final List<Integer> _keyframes = new ArrayList<>();
+    /** The ticks of the keyframe records. */
+    private final List<Integer> _keyframeTicks = new ArrayList<>();
+    private final List<Message> _messages = new ArrayList<>();
+    private final List<Action> _actions = new ArrayList<>();
+    private final Map<ReplayState, ReplayState> _states = new HashMap<>();
+    private int _lastTick;
+
+    private final Map<Integer, ReplayState> _definitions = new HashMap<>();
+    private final Map<Integer, WorldObject> _state = new LinkedHashMap<>();
+    /** The position of the next record to apply or -1 if no keyframe was loaded yet. */
+    private int _position = -1;
+    private int _tick;
+
+    /**
+     * Opens a journal
+     *
+     * @param file
+     *            The journal file
+     * @throws IOException
+     *             When the file can not be read or is not a journal
+     */
+    public SimulationReplay(Path file) throws IOException {
+        this._channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (this._channel.size() > Integer.MAX_VALUE) throw new IOException("The journal is too large.");
+            this._data = this._channel.map(FileChannel.MapMode.READ_ONLY, 0, this._channel.size());
+            if ((this._data.remaining() < 8) || (this._data.getLong(0) != JournalFormat.MAGIC))
+                throw new IOException("Not a simulation journal: " + file);
+            this.index();
+        } catch (IOException | RuntimeException e) {
+            this._channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The last recorded tick
+     */
+    public int lastTick() {
+        return this._lastTick;
+    }
+
+    /**
+     * @return All recorded messages in the order they were printed
+     */
+    public List<Message> messages() {
+        return Collections.unmodifiableList(this._messages);
+    }
+
+    /**
+     * @return All recorded actions in the order they were performed
+     */
+    public List<Action> actions() {
+        return Collections.unmodifiableList(this._actions);
+    }
+
+    /**
+     * Reconstructs the territory at the end of the given tick
+     *
+     * @param tick
+     *            The tick
+     * @return The territory
+     */
+    public synchronized Territory territoryAt(int tick) {
+        int keyframe = this.lastKeyframeAtOrBefore(tick);
+        if ((this._position < 0) || (this._tick > tick) || (this._position < this._keyframes.get(keyframe))) {
+            this._position = this._keyframes.get(keyframe);
+        }
+        while ((this._position < this._data.limit()) && (this.tickOf(this._position) <= tick)) {
+            this._position = this.apply(this._position);
+        }
+        this._tick = tick;
+        return new Territory().addAll(this._state.values());
+    }
+
+    /**
+     * Creates a new simulation from the territory at the end of the given tick. Its entities can not act.
+     *
+     * @param tick
+     *            The tick
+     * @return The simulation
+     */
+    public Simulation simulationAt(int tick) {
+        return new Simulation(this.territoryAt(tick));
+    }
+
+    /**
+     * Closes the journal file
+     *
+     * @throws IOException
+     *             When closing the file fails
+     */
+    @Override
+    public void close() throws IOException {
+        this._channel.close();
+    }
+
+    // private
+
+    /**
+     * Finds all keyframes, actions and messages and the last tick.
+     */
+    private void index() throws IOException {
+        int position = 8;
+        try {
+            while (position < this._data.limit()) {
+                byte type = this._data.get(position);
+                int length = this._data.getInt(position + 1);
+                int tick = this.tickOf(position);
+                if (type == JournalFormat.KEYFRAME) {
+                    this._keyframes.add(position);
+                    this._keyframeTicks.add(tick);
+                } else if (type == JournalFormat.MESSAGE) {
+                    ByteBuffer payload = this.payload(position);
+                    payload.getInt();
+                    int entity = payload.getInt();
+                    this._messages.add(new Message(tick, entity, JournalFormat.getString(payload)));
+                } else if (type == JournalFormat.CHANGES) {
+                    ByteBuffer payload = this.payload(position);
+                    payload.getInt();
+                    ActionType action = JournalFormat.actionType(payload.get());
+                    this._actions.add(new Action(tick, payload.getInt(), action));
+                }
+                this._lastTick = Math.max(this._lastTick, tick);
+                position += JournalFormat.RECORD_HEADER + length;
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("The journal is truncated.", e);
+        }
+        if (this._keyframes.isEmpty()) throw new IOException("The journal does not contain a keyframe.");
+    }
+
+    private int lastKeyframeAtOrBefore(int tick) {
+        int index = Collections.binarySearch(this._keyframeTicks, tick + 1);
+        index = index < 0 ? -index - 1 : index;
+        while ((index > 0) && (this._keyframeTicks.get(index - 1) > tick)) {
+            --index; // several keyframes may share a tick
+        }
+        return Math.max(index - 1, 0);
+    }
+
+    private int tickOf(int position) {
+        return this._data.getInt(position + JournalFormat.RECORD_HEADER);
+    }
+
+    private ByteBuffer payload(int position) {
+        ByteBuffer payload = this._data.duplicate();
+        payload.position(position + JournalFormat.RECORD_HEADER);
+        payload.limit(position + JournalFormat.RECORD_HEADER + this._data.getInt(position + 1));
+        return payload.slice();
+    }
+
+    /**
+     * Applies a record to the current state
+     *
+     * @return The position of the next record
+     */
+    private int apply(int position) {
+        ByteBuffer payload = this.payload(position);
+        payload.getInt(); // tick
+        switch (this._data.get(position)) {
+            case JournalFormat.KEYFRAME:
+                this._state.clear();
+                this._definitions.clear();
+                for (int count = payload.getInt(); count > 0; --count) {
+                    int id = payload.getInt();
+                    this._definitions.put(id, this.readDefinition(payload));
+                    this._state.put(id, this.readPlacement(payload, this._definitions.get(id)));
+                }
+                break;
+            case JournalFormat.CHANGES:
+                payload.get(); // action, indexed in advance
+                payload.getInt(); // acting entity
+                for (int count = payload.getInt(); count > 0; --count) {
+                    int id = payload.getInt();
+                    byte kind = payload.get();
+                    if (kind == JournalFormat.REMOVED) {
+                        this._state.remove(id);
+                        continue;
+                    }
+                    if (kind == JournalFormat.DEFINED) {
+                        this._definitions.put(id, this.readDefinition(payload));
+                    }
+                    this._state.put(id, this.readPlacement(payload, this._definitions.get(id)));
+                }
+                break;
+            default:
+                break; // messages are indexed in advance
+        }
+        return position + JournalFormat.RECORD_HEADER + payload.limit();
+    }
+
+    private ReplayState readDefinition(ByteBuffer payload) {
+        ReplayState state = new ReplayState(JournalFormat.getString(payload), payload.get() != 0);
+        ReplayState known = this._states.putIfAbsent(state, state);
+        return known == null ? state : known;
+    }
+
+    private WorldObject readPlacement(ByteBuffer payload, ReplayState state) {
+        return new WorldObject(state, payload.getInt(), payload.getInt(), payload.getFloat(),
+                JournalFormat.direction(payload.get()));
+    }
+
+    /**
+     * A message printed by an entity
+     */
+    public static class Message {
+        /** The tick the message was printed at. */
+        public final int tick;
+        /** The id of the entity in the journal. */
+        public final int entity;
+        /** The message. */
+        public final String text;
+
+        Message(int tick, int entity, String text) {
+            this.tick = tick;
+            this.entity = entity;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return this.tick + ": " + this.text;
+        }
+    }
+
+    /**
+     * The kind of action which changed world objects
+     */
+    public enum ActionType {
+        /** An entity was spawned. */
+        SPAWN,
+        /** An entity was despawned. */
+        DESPAWN,
+        /** An entity moved. */
+        MOVE,
+        /** An entity turned left. */
+        TURN_LEFT,
+        /** An entity was teleported. */
+        TELEPORT,
+        /** An entity collected entities. */
+        COLLECT,
+        /** An entity dropped entities. */
+        DROP,
+        /** Any other change. */
+        OTHER
+    }
+
+    /**
+     * An action which changed world objects
+     */
+    public static class Action {
+        /** The tick the action was performed at. */
+        public final int tick;
+        /** The id of the acting entity in the journal or -1 if the change was not caused by an entity. */
+        public final int entity;
+        /** The kind of action. */
+        public final ActionType type;
+
+        Action(int tick, int entity, ActionType type) {
+            this.tick = tick;
+            this.entity = entity;
+            this.type = type;
+        }
+
+        @Override
+        public String toString() {
+            return this.tick + ": " + this.type + " by " + this.entity;
+        }
+    }
+
+    /**
+     * The state of a replayed entity: only its sprite and whether it is solid
+     */
+    public static class ReplayState implements EntityState {
+        private final String _spriteId;
+        private final boolean _solid;
+
+        ReplayState(String spriteId, boolean solid) {
+            this._spriteId = spriteId;
+            this._solid = solid;
+        }
+
+        @Override
+        public Entity createEntity(Simulation sim) {
+            return new ReplayedEntity(sim, this);
+        }
+
+        @Override
+        public boolean isSolid() {
+            return this._solid;
+        }
+
+        @Override
+        public String spriteId() {
+            return this._spriteId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ReplayState)) return false;
+            ReplayState other = (ReplayState) obj;
+            return this._spriteId.equals(other._spriteId) && (this._solid == other._solid);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this._spriteId, this._solid);
+        }
+    }
+
+    /**
+     * An entity of a replayed simulation
+     */
+    public static class ReplayedEntity extends Entity {
+        private final ReplayState _state;
+
+        ReplayedEntity(Simulation sim, ReplayState state) {
+            super(sim);
+            this._state = state;
+        }
+
+        @Override
+        public EntityState state() {
+            return this._state;
+        }
+    }
+}
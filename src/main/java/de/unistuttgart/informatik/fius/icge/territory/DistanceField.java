@@ -0,0 +1,393 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
+
+/**
+ * The shortest path distances of all cells in a rectangular area to one target cell.
+ * <p>
+ * Since every move costs the same and moves are reversible, the distance from a cell to the target is the same as the
+ * distance from the target to that cell. A distance field for the position of an entity therefore answers "how far is
+ * every other cell away from this entity".
+ * <p>
+ * The field is only valid inside its bounds. The bounds must be chosen such that their outermost ring of cells is free
+ * and every solid cell that is relevant for the paths lies inside, in that case no shortest path ever needs to leave
+ * the bounds.
+ */
+public class DistanceField {
+
+    /** The distance of cells that can not be reached from the target. */
+    public static final int UNREACHABLE = -1;
+    /** The maximum number of cells inside the bounds of a distance field. */
+    public static final int MAX_CELLS = 1 << 22;
+
+    private final int _targetColumn;
+    private final int _targetRow;
+    private final int _minColumn;
+    private final int _minRow;
+    private final int _width;
+    private final int _height;
+    private final int[] _distances;
+
+    /**
+     * Computes the distance field for the given target with a breadth first search.
+     *
+     * @param targetColumn
+     *            The column of the target cell
+     * @param targetRow
+     *            The row of the target cell
+     * @param minColumn
+     *            The first column inside the bounds
+     * @param minRow
+     *            The first row inside the bounds
+     * @param maxColumn
+     *            The last column inside the bounds
+     * @param maxRow
+     *            The last row inside the bounds
+     * @param solidCells
+     *            The keys (see {@link #cellKey(int, int)}) of all cells blocked by a solid entity
+     * @throws IllegalArgumentException
+     *             When the target is outside of the bounds or the bounds contain more than {@link #MAX_CELLS} cells
+     */
+    public DistanceField(int targetColumn, int targetRow, int minColumn, int minRow, int maxColumn, int maxRow,
+            Set<Long> solidCells) {
+        if ((targetColumn < minColumn) || (targetColumn > maxColumn) || (targetRow < minRow) || (targetRow > maxRow))
+            throw new IllegalArgumentException("Target out of bounds.");
+        if (!fits(minColumn, minRow, maxColumn, maxRow)) throw new IllegalArgumentException("Bounds too large.");
+        this._targetColumn = targetColumn;
+        this._targetRow = targetRow;
+        this._minColumn = minColumn;
+        this._minRow = minRow;
+        this._width = (maxColumn - minColumn) + 1;
+        this._height = (maxRow - minRow) + 1;
+        this._distances = new int[this._width * this._height];
+        Arrays.fill(this._distances, UNREACHABLE);
+
+        boolean[] solid = new boolean[this._distances.length];
+        for (long key : solidCells) {
+            int column = (int) (key >> 32);
+            int row = (int) key;
+            if (this.contains(column, row)) {
+                solid[this.index(column, row)] = true;
+            }
+        }
+
+        int target = this.index(targetColumn, targetRow);
+        if (solid[target]) return;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        this._distances[target] = 0;
+        queue.add(target);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            int next = this._distances[current] + 1;
+            int x = current % this._width;
+            int y = current / this._width;
+            if (x > 0) this.visit(current - 1, next, solid, queue);
+            if (x < (this._width - 1)) this.visit(current + 1, next, solid, queue);
+            if (y > 0) this.visit(current - this._width, next, solid, queue);
+            if (y < (this._height - 1)) this.visit(current + this._width, next, solid, queue);
+        }
+    }
+
+    /**
+     * Checks whether a distance field can cover the given bounds.
+     *
+     * @param minColumn
+     *            The first column inside the bounds
+     * @param minRow
+     *            The first row inside the bounds
+     * @param maxColumn
+     *            The last column inside the bounds
+     * @param maxRow
+     *            The last row inside the bounds
+     * @return Whether the bounds contain at most {@link #MAX_CELLS} cells
+     */
+    public static boolean fits(int minColumn, int minRow, int maxColumn, int maxRow) {
+        long cells = (((long) maxColumn - minColumn) + 1) * (((long) maxRow - minRow) + 1);
+        return cells <= MAX_CELLS;
+    }
+
+    /**
+     * Searches a shortest path between two cells without a distance field.
+     * <p>
+     * The search only looks at the cells it visits, so it works for bounds of any size, but unlike a distance field
+     * its result can not be reused for other start cells. It visits at most {@link #MAX_CELLS} cells.
+     *
+     * @param fromColumn
+     *            The column of the start cell
+     * @param fromRow
+     *            The row of the start cell
+     * @param toColumn
+     *            The column of the target cell
+     * @param toRow
+     *            The row of the target cell
+     * @param minColumn
+     *            The first column inside the bounds
+     * @param minRow
+     *            The first row inside the bounds
+     * @param maxColumn
+     *            The last column inside the bounds
+     * @param maxRow
+     *            The last row inside the bounds
+     * @param solidCells
+     *            The keys (see {@link #cellKey(int, int)}) of all cells blocked by a solid entity
+     * @return The directions of the moves leading to the target or null if the target can not be reached
+     * @throws IllegalStateException
+     *             When the search would have to visit more than {@link #MAX_CELLS} cells
+     */
+    public static List<Direction> searchPath(int fromColumn, int fromRow, int toColumn, int toRow, int minColumn,
+            int minRow, int maxColumn, int maxRow, Set<Long> solidCells) {
+        long target = cellKey(toColumn, toRow);
+        if (solidCells.contains(target)) return null;
+        // A* with the manhattan distance, which never overestimates since every move costs the same
+        HashMap<Long, Integer> distances = new HashMap<>();
+        HashMap<Long, Direction> steps = new HashMap<>();
+        // ties are broken towards longer paths, i.e. closer to the target, so free areas are crossed in a straight line
+        PriorityQueue<long[]> queue = new PriorityQueue<>(
+                (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[2], a[2]));
+        long start = cellKey(fromColumn, fromRow);
+        distances.put(start, 0);
+        queue.add(new long[] { Math.abs(toColumn - fromColumn) + Math.abs(toRow - fromRow), start, 0 });
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            long key = entry[1];
+            int distance = (int) entry[2];
+            if (distance != distances.get(key)) continue; // a shorter path was found meanwhile
+            int column = (int) (key >> 32);
+            int row = (int) key;
+            if (key == target) {
+                List<Direction> path = new ArrayList<>(distance);
+                while ((column != fromColumn) || (row != fromRow)) {
+                    Direction step = steps.get(cellKey(column, row));
+                    path.add(step);
+                    column -= columnOffset(step);
+                    row -= rowOffset(step);
+                }
+                Collections.reverse(path);
+                return path;
+            }
+            for (Direction dir : Direction.values()) {
+                int nextColumn = column + columnOffset(dir);
+                int nextRow = row + rowOffset(dir);
+                long next = cellKey(nextColumn, nextRow);
+                if ((nextColumn < minColumn) || (nextColumn > maxColumn) || (nextRow < minRow) || (nextRow > maxRow)
+                        || solidCells.contains(next)) {
+                    continue;
+                }
+                Integer known = distances.get(next);
+                if ((known != null) && (known <= (distance + 1))) {
+                    continue;
+                }
+                if (distances.size() >= MAX_CELLS) throw new IllegalStateException("Too many cells to search.");
+                distances.put(next, distance + 1);
+                steps.put(next, dir);
+                queue.add(new long[] { distance + 1 + Math.abs(toColumn - nextColumn) + Math.abs(toRow - nextRow), next,
+                        distance + 1 });
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the key used for the given cell in sets of cells.
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return The key
+     */
+    public static long cellKey(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return The column of the target cell
+     */
+    public int targetColumn() {
+        return this._targetColumn;
+    }
+
+    /**
+     * @return The row of the target cell
+     */
+    public int targetRow() {
+        return this._targetRow;
+    }
+
+    /**
+     * Checks whether the given cell is inside the bounds of this distance field.
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return Whether the cell is inside the bounds
+     */
+    public boolean contains(int column, int row) {
+        return (column >= this._minColumn) && (column < (this._minColumn + this._width)) && (row >= this._minRow)
+                && (row < (this._minRow + this._height));
+    }
+
+    /**
+     * Checks whether the given cell lies on the outermost ring of the bounds of this distance field.
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return Whether the cell is on the border
+     */
+    public boolean isOnBorder(int column, int row) {
+        return this.contains(column, row) && ((column == this._minColumn) || (column == (this._minColumn + this._width) - 1)
+                || (row == this._minRow) || (row == (this._minRow + this._height) - 1));
+    }
+
+    /**
+     * Get the length of the shortest path between the given cell and the target.
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return The distance or {@link #UNREACHABLE}
+     * @throws IllegalArgumentException
+     *             When the cell is outside of the bounds of this distance field
+     */
+    public int distance(int column, int row) {
+        if (!this.contains(column, row)) throw new IllegalArgumentException("Cell out of bounds.");
+        return this._distances[this.index(column, row)];
+    }
+
+    /**
+     * Checks whether the target can be reached from the given cell.
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return Whether the target can be reached
+     * @throws IllegalArgumentException
+     *             When the cell is outside of the bounds of this distance field
+     */
+    public boolean isReachable(int column, int row) {
+        return this.distance(column, row) != UNREACHABLE;
+    }
+
+    /**
+     * Get a shortest path from the given cell to the target.
+     *
+     * @param column
+     *            The column of the start cell
+     * @param row
+     *            The row of the start cell
+     * @return The directions of the moves leading to the target or null if the target can not be reached
+     * @throws IllegalArgumentException
+     *             When the cell is outside of the bounds of this distance field
+     */
+    public List<Direction> path(int column, int row) {
+        int distance = this.distance(column, row);
+        if (distance == UNREACHABLE) return null;
+        List<Direction> result = new ArrayList<>(distance);
+        while (distance > 0) {
+            Direction step = null;
+            for (Direction dir : Direction.values()) {
+                int nextColumn = column + columnOffset(dir);
+                int nextRow = row + rowOffset(dir);
+                if (this.contains(nextColumn, nextRow) && (this.distance(nextColumn, nextRow) == (distance - 1))) {
+                    step = dir;
+                    break;
+                }
+            }
+            result.add(step);
+            column += columnOffset(step);
+            row += rowOffset(step);
+            --distance;
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether this distance field needs to be recomputed after the given cell changed its solid state.
+     *
+     * @param column
+     *            The column of the changed cell
+     * @param row
+     *            The row of the changed cell
+     * @param nowSolid
+     *            true if the cell got blocked and false if it got free
+     * @return Whether the distance field is out of date
+     */
+    public boolean isAffectedBy(int column, int row, boolean nowSolid) {
+        if (!this.contains(column, row)) return false; // shortest paths never leave the bounds
+        if (nowSolid) return this.isOnBorder(column, row) || this.isReachable(column, row);
+        if ((column == this._targetColumn) && (row == this._targetRow)) return true;
+        for (Direction dir : Direction.values()) {
+            int nextColumn = column + columnOffset(dir);
+            int nextRow = row + rowOffset(dir);
+            if (this.contains(nextColumn, nextRow) && this.isReachable(nextColumn, nextRow)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the change of the column when moving one cell in the given direction.
+     *
+     * @param dir
+     *            The direction
+     * @return The change of the column
+     */
+    public static int columnOffset(Direction dir) {
+        switch (dir) {
+            case EAST:
+                return 1;
+            case WEST:
+                return -1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Get the change of the row when moving one cell in the given direction.
+     *
+     * @param dir
+     *            The direction
+     * @return The change of the row
+     */
+    public static int rowOffset(Direction dir) {
+        switch (dir) {
+            case NORTH:
+                return -1;
+            case SOUTH:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private int index(int column, int row) {
+        return ((row - this._minRow) * this._width) + (column - this._minColumn);
+    }
+
+    private void visit(int index, int distance, boolean[] solid, ArrayDeque<Integer> queue) {
+        if (solid[index] || (this._distances[index] != UNREACHABLE)) return;
+        this._distances[index] = distance;
+        queue.add(index);
+    }
+}
@@ -35,6 +35,18 @@ public interface EntityState {
         return false;
     }
 
+    /**
+     * Checks whether the entity never moves or changes its sprite while it is alive. User interfaces may draw static
+     * entities in advance.
+     * 
+     * The default implementation always returns false.
+     * 
+     * @return true if the entity is static
+     */
+    public default boolean isStatic() {
+        return false;
+    }
+
     /**
      * Return the sprite id used to determine the sprite to render this Entity with.
      * 
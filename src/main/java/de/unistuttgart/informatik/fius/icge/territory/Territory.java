@@ -7,7 +7,14 @@
 
 package de.unistuttgart.informatik.fius.icge.territory;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -29,6 +36,23 @@ public class Territory {
         return result;
     }
 
+    /**
+     * Get a new territory which additionally contains all given world objects
+     * 
+     * @param wobs
+     *            The world objects to add
+     * @return The new territory or this territory if wobs is empty
+     */
+    public Territory addAll(Collection<WorldObject> wobs) {
+        if (wobs.isEmpty()) return this;
+        Territory result = new Territory();
+        result._worldObjects = new ArrayList<>(this._worldObjects.size() + wobs.size());
+        result._worldObjects.addAll(this._worldObjects);
+        result._worldObjects.addAll(wobs);
+        result._worldObjects.sort((wo1, wo2) -> wo1.compareTo(wo2));
+        return result;
+    }
+
     public Territory replace(WorldObject oldWob, WorldObject newWob) {
         if (newWob == null) {
             System.out.println();
@@ -48,6 +72,28 @@ public class Territory {
         return result;
     }
 
+    /**
+     * Get a new territory without all given world objects
+     * 
+     * @param wobs
+     *            The world objects to remove; all of them must be contained in this territory
+     * @return The new territory or this territory if wobs is empty
+     */
+    public Territory removeAll(Collection<WorldObject> wobs) {
+        if (wobs.isEmpty()) return this;
+        Set<WorldObject> toRemove = Collections.newSetFromMap(new IdentityHashMap<>());
+        toRemove.addAll(wobs);
+        Territory result = new Territory();
+        result._worldObjects = new ArrayList<>(this._worldObjects.size());
+        for (WorldObject wob : this._worldObjects) {
+            if (!toRemove.remove(wob)) {
+                result._worldObjects.add(wob);
+            }
+        }
+        if (!toRemove.isEmpty()) throw new IllegalArgumentException();
+        return result;
+    }
+
     public Territory removeIf(Predicate<WorldObject> pred) {
         Territory result = new Territory(this);
         result._worldObjects.removeIf(pred);
@@ -92,4 +138,34 @@ public class Territory {
     public void forEach(Consumer<WorldObject> consumer) {
         this._worldObjects.forEach(consumer);
     }
+
+    /**
+     * Get a hash of the content of this territory
+     * <p>
+     * The hash covers the class, sprite and position of every world object in order, so equal territories built the
+     * same way have the same hash. The internal state of the entities (e.g. their inventories) is not covered.
+     * 
+     * @return The SHA-256 hash as a hex string
+     */
+    public String contentHash() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java platform has to support SHA-256
+        }
+        StringBuilder sb = new StringBuilder();
+        for (WorldObject wob : this._worldObjects) {
+            sb.setLength(0);
+            sb.append(wob.state.getClass().getName()).append(' ').append(wob.state.spriteId()).append(' ')
+                    .append(wob.column).append(' ').append(wob.row).append(' ').append(wob.z).append(' ')
+                    .append(wob.direction).append('\n');
+            digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The difference between two territories: the world objects removed from the first and the world objects added to it.
+ * <p>
+ * World objects are compared by identity, like in {@link Territory}. A delta can be applied to a territory or to a set
+ * of world objects in both directions.
+ */
+public final class TerritoryDelta {
+    private static final WorldObject[] NONE = new WorldObject[0];
+
+    private final WorldObject[] _removed;
+    private final WorldObject[] _added;
+
+    /**
+     * Creates a new territory delta
+     *
+     * @param removed
+     *            The world objects that are removed
+     * @param added
+     *            The world objects that are added
+     */
+    public TerritoryDelta(Collection<WorldObject> removed, Collection<WorldObject> added) {
+        this._removed = removed.isEmpty() ? NONE : removed.toArray(new WorldObject[removed.size()]);
+        this._added = added.isEmpty() ? NONE : added.toArray(new WorldObject[added.size()]);
+    }
+
+    /**
+     * @return The world objects that are removed
+     */
+    public List<WorldObject> removed() {
+        return Collections.unmodifiableList(Arrays.asList(this._removed));
+    }
+
+    /**
+     * @return The world objects that are added
+     */
+    public List<WorldObject> added() {
+        return Collections.unmodifiableList(Arrays.asList(this._added));
+    }
+
+    /**
+     * @return The number of world objects this delta refers to
+     */
+    public int size() {
+        return this._removed.length + this._added.length;
+    }
+
+    /**
+     * Get the territory after this delta
+     *
+     * @param tty
+     *            The territory before this delta; it has to contain all removed world objects
+     * @return The new territory
+     */
+    public Territory apply(Territory tty) {
+        return tty.removeAll(Arrays.asList(this._removed)).addAll(Arrays.asList(this._added));
+    }
+
+    /**
+     * Get the territory before this delta
+     *
+     * @param tty
+     *            The territory after this delta; it has to contain all added world objects
+     * @return The old territory
+     */
+    public Territory revert(Territory tty) {
+        return tty.removeAll(Arrays.asList(this._added)).addAll(Arrays.asList(this._removed));
+    }
+
+    /**
+     * Applies this delta to a set of world objects
+     *
+     * @param wobs
+     *            The set to change, which should compare by identity
+     */
+    public void applyTo(Set<WorldObject> wobs) {
+        for (WorldObject wob : this._removed) {
+            wobs.remove(wob);
+        }
+        Collections.addAll(wobs, this._added);
+    }
+
+    /**
+     * Reverts this delta on a set of world objects
+     *
+     * @param wobs
+     *            The set to change, which should compare by identity
+     */
+    public void revertOn(Set<WorldObject> wobs) {
+        for (WorldObject wob : this._added) {
+            wobs.remove(wob);
+        }
+        Collections.addAll(wobs, this._removed);
+    }
+}
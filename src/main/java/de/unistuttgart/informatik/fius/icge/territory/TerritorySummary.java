@@ -0,0 +1,196 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * The number of world objects per sprite in square blocks of cells of a territory.
+ * <p>
+ * A summary answers how many and which world objects are in an area without looking at the world objects, so views
+ * zoomed far out can draw one block instead of many cells. Only blocks containing world objects are stored. A summary
+ * is kept up to date by applying the deltas of its territory.
+ */
+public final class TerritorySummary {
+
+    private final int _blockCells;
+    private final HashMap<Long, Block> _blocks = new HashMap<>();
+
+    /**
+     * Summarizes a territory
+     *
+     * @param tty
+     *            The territory
+     * @param blockCells
+     *            The number of columns and rows of a block
+     */
+    public TerritorySummary(Territory tty, int blockCells) {
+        if (blockCells < 1) throw new IllegalArgumentException("The block size must be positive.");
+        this._blockCells = blockCells;
+        Block[] last = { null };
+        tty.forEach(wob -> {
+            int column = Math.floorDiv(wob.column, blockCells);
+            int row = Math.floorDiv(wob.row, blockCells);
+            Block block = last[0];
+            if ((block == null) || (block.column != column) || (block.row != row)) { // world objects are sorted by row
+                block = this._blocks.computeIfAbsent(DistanceField.cellKey(column, row), key -> new Block(column, row));
+                last[0] = block;
+            }
+            block.add(wob.state.spriteId());
+        });
+    }
+
+    /**
+     * Updates this summary to the territory after a delta
+     *
+     * @param delta
+     *            The delta of the summarized territory
+     */
+    public void apply(TerritoryDelta delta) {
+        for (WorldObject wob : delta.removed()) {
+            Long key = DistanceField.cellKey(Math.floorDiv(wob.column, this._blockCells),
+                    Math.floorDiv(wob.row, this._blockCells));
+            Block block = this._blocks.get(key);
+            if ((block != null) && block.remove(wob.state.spriteId()) && (block.total() == 0)) {
+                this._blocks.remove(key);
+            }
+        }
+        for (WorldObject wob : delta.added()) {
+            int column = Math.floorDiv(wob.column, this._blockCells);
+            int row = Math.floorDiv(wob.row, this._blockCells);
+            this._blocks.computeIfAbsent(DistanceField.cellKey(column, row), key -> new Block(column, row))
+                    .add(wob.state.spriteId());
+        }
+    }
+
+    /**
+     * @return The number of columns and rows of a block
+     */
+    public int blockCells() {
+        return this._blockCells;
+    }
+
+    /**
+     * @return The number of blocks containing world objects
+     */
+    public int size() {
+        return this._blocks.size();
+    }
+
+    /**
+     * Get a block
+     *
+     * @param blockColumn
+     *            The column of the block, i.e. the column of its first cell divided by the block size
+     * @param blockRow
+     *            The row of the block
+     * @return The block or null if it contains no world objects
+     */
+    public Block block(int blockColumn, int blockRow) {
+        return this._blocks.get(DistanceField.cellKey(blockColumn, blockRow));
+    }
+
+    /**
+     * Passes every block containing world objects to a consumer, in no particular order
+     *
+     * @param consumer
+     *            The consumer
+     */
+    public void forEach(Consumer<Block> consumer) {
+        this._blocks.values().forEach(consumer);
+    }
+
+    /**
+     * The world objects in one block, counted per sprite id
+     */
+    public static final class Block {
+        /** The column of the block. */
+        public final int column;
+        /** The row of the block. */
+        public final int row;
+        private String[] _spriteIds = new String[1];
+        private int[] _counts = new int[1];
+        private int _kinds;
+        private int _total;
+
+        private Block(int column, int row) {
+            this.column = column;
+            this.row = row;
+        }
+
+        private void add(String spriteId) {
+            ++this._total;
+            for (int i = 0; i < this._kinds; ++i) {
+                if (this._spriteIds[i].equals(spriteId)) {
+                    ++this._counts[i];
+                    return;
+                }
+            }
+            if (this._kinds == this._spriteIds.length) {
+                this._spriteIds = Arrays.copyOf(this._spriteIds, this._kinds * 2);
+                this._counts = Arrays.copyOf(this._counts, this._kinds * 2);
+            }
+            this._spriteIds[this._kinds] = spriteId;
+            this._counts[this._kinds] = 1;
+            ++this._kinds;
+        }
+
+        /**
+         * @return Whether a world object with the sprite id was in the block
+         */
+        private boolean remove(String spriteId) {
+            for (int i = 0; i < this._kinds; ++i) {
+                if (this._spriteIds[i].equals(spriteId)) {
+                    --this._total;
+                    if (--this._counts[i] == 0) {
+                        --this._kinds;
+                        System.arraycopy(this._spriteIds, i + 1, this._spriteIds, i, this._kinds - i);
+                        System.arraycopy(this._counts, i + 1, this._counts, i, this._kinds - i);
+                        this._spriteIds[this._kinds] = null;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return The number of world objects in the block
+         */
+        public int total() {
+            return this._total;
+        }
+
+        /**
+         * @return The number of different sprite ids in the block
+         */
+        public int kinds() {
+            return this._kinds;
+        }
+
+        /**
+         * @param kind
+         *            The index of the sprite id, less than {@link #kinds()}
+         * @return The sprite id
+         */
+        public String spriteId(int kind) {
+            return this._spriteIds[kind];
+        }
+
+        /**
+         * @param kind
+         *            The index of the sprite id, less than {@link #kinds()}
+         * @return The number of world objects with the sprite id
+         */
+        public int count(int kind) {
+            return this._counts[kind];
+        }
+    }
+}
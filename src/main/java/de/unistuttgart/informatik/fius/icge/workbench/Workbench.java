@@ -10,6 +10,8 @@ package de.unistuttgart.informatik.fius.icge.workbench;
 import de.unistuttgart.informatik.fius.icge.event.Event;
 import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
 import de.unistuttgart.informatik.fius.icge.simulation.Entity.*;
+import de.unistuttgart.informatik.fius.icge.simulation.GreedyEntity.CollectEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.GreedyEntity.DropEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.MovableEntity.MoveEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.MovableEntity.TurnLeftEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
@@ -98,7 +100,17 @@ public class Workbench {
         } else if (ev instanceof DespawnEvent) {
             this._view.println(((EntityEvent) ev).entity.getClass().getSimpleName() + " :: despawn();");
         } else if (ev instanceof MoveEvent) {
-            this._view.println(((EntityEvent) ev).entity.getClass().getSimpleName() + " :: move();");
+            int distance = ((MoveEvent) ev).distance;
+            this._view.println(((EntityEvent) ev).entity.getClass().getSimpleName() + " :: move("
+                    + (distance == 1 ? "" : String.valueOf(distance)) + ");");
+        } else if (ev instanceof CollectEvent) {
+            CollectEvent cev = (CollectEvent) ev;
+            this._view.println(cev.entity.getClass().getSimpleName() + " :: collectAll(" + cev.type.getSimpleName()
+                    + "); // " + cev.entities.size());
+        } else if (ev instanceof DropEvent) {
+            DropEvent dev = (DropEvent) ev;
+            this._view.println(dev.entity.getClass().getSimpleName() + " :: drop(" + dev.type.getSimpleName() + ", "
+                    + dev.entities.size() + ");");
         } else if (ev instanceof TeleportEvent) {
             this._view.println(((EntityEvent) ev).entity.getClass().getSimpleName() + " :: teleport();");
         } else if (ev instanceof TurnLeftEvent) {
@@ -8,6 +8,7 @@
 package de.unistuttgart.informatik.fius.icge.workbench;
 
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
 
 public interface WorkbenchView {
     
@@ -17,6 +18,19 @@ public interface WorkbenchView {
     
     void setSimulation(Simulation sim);
     
+    /**
+     * @return The past territory shown instead of the current territory of the simulation or null
+     */
+    Territory historic();
+    
+    /**
+     * Shows a past territory instead of the current territory of the simulation. Tools can not be used meanwhile.
+     * 
+     * @param tty
+     *            The territory to show or null to show the current territory again
+     */
+    void setHistoric(Territory tty);
+    
     double scale();
     
     void setScale(double scale);
@@ -7,7 +7,9 @@
 
 package de.unistuttgart.informatik.fius.icge.workbench.swing;
 
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorConvertOp;
 import java.util.*;
 
 import de.unistuttgart.informatik.fius.icge.territory.EntityState;
@@ -22,6 +24,9 @@ public class AnimatedImages {
 
     private final Map<String, SpriteCollection> entries = new HashMap<>();
 
+    /** The grayscale variants of the sprites, which are compared by identity. */
+    private static final Map<BufferedImage, BufferedImage> grayscales = new WeakHashMap<>();
+
     /**
      * Set sprite(s) for Entity State class.
      * 
@@ -201,6 +206,23 @@ public class AnimatedImages {
         return spriteList.get(index);
     }
 
+    /**
+     * Get the grayscale variant of a sprite. It is only computed once per sprite.
+     * 
+     * @param image
+     *            The sprite
+     * @return The grayscale sprite
+     */
+    public static synchronized BufferedImage grayscale(BufferedImage image) {
+        BufferedImage gray = grayscales.get(image);
+        if (gray == null) {
+            gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_GRAY), null).filter(image, gray);
+            grayscales.put(image, gray);
+        }
+        return gray;
+    }
+
     /**
      * Get the sprite collection with the given spriteId
      * 
@@ -45,6 +45,7 @@ public class AnimationInterpreter {
             this._image = _animatedImages.get(animation.type).get(wob.state.spriteId(), wob.direction, progress);
             if (this._image != null) {
                 if (animation.type == AnimationType.MOVE) {
+                    undone *= animation.distance;
                     switch (wob.direction) {
                         default:
                         case EAST:
@@ -40,6 +40,7 @@ import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
 import de.unistuttgart.informatik.fius.icge.event.EventListener;
 import de.unistuttgart.informatik.fius.icge.simulation.Entity;
 import de.unistuttgart.informatik.fius.icge.simulation.Entity.DespawnEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.GreedyEntity.CollectEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Entity.EntityEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionManager;
@@ -151,7 +152,9 @@ public class EntityInspector {
         // listener for entity events which updates the inspected values
         EventListener listener = EventDispatcher.addListener(EntityEvent.class, ev -> {
             EntityEvent eev = (EntityEvent) ev;
-            if (this._selectedEntity == eev.entity) {
+            if ((eev instanceof CollectEvent) && ((CollectEvent) eev).entities.contains(this._selectedEntity)) {
+                this.inspectEntity();
+            } else if (this._selectedEntity == eev.entity) {
                 if (eev instanceof DespawnEvent) {
                     this.inspectEntity();
                 } else {
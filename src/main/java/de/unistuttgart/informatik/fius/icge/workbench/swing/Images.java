@@ -18,7 +18,7 @@ public class Images {
     
     private static final HashMap<String, BufferedImage> _images = new HashMap<>();
     
-    public static BufferedImage image(String imgName) {
+    public static synchronized BufferedImage image(String imgName) {
         BufferedImage img = _images.get(imgName);
         return img != null ? img : loadImage(imgName);
     }
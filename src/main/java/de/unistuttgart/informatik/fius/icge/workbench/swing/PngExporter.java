@@ -0,0 +1,210 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.workbench.swing;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import javax.imageio.ImageIO;
+
+import de.unistuttgart.informatik.fius.icge.simulation.journal.SimulationReplay;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+
+/**
+ * Renders ticks of a recorded simulation into PNG files without a display.
+ * <p>
+ * The territories are reconstructed one after another by the calling thread, which is cheap when the ticks are
+ * ascending, while the frames are drawn and encoded by worker threads, each with its own {@link SimulationRenderer}.
+ * Only a few frames per worker are waiting at any time. The journal does not contain animations, so every frame shows
+ * the territory at the end of its tick.
+ */
+public class PngExporter {
+    /** The number of frames per worker which may be waiting to be drawn. */
+    private static final int FRAMES_PER_WORKER = 2;
+
+    private final int _width;
+    private final int _height;
+    private final int _workers;
+    private double _scale, _centeredColumn, _centeredRow;
+    private boolean _fit = true;
+
+    /**
+     * Creates a new exporter
+     *
+     * @param width
+     *            The width of the images in pixels
+     * @param height
+     *            The height of the images in pixels
+     * @param workers
+     *            The number of worker threads
+     */
+    public PngExporter(int width, int height, int workers) {
+        if ((width < 1) || (height < 1)) throw new IllegalArgumentException("The image size must be positive.");
+        if (workers < 1) throw new IllegalArgumentException("There must be at least one worker.");
+        this._width = width;
+        this._height = height;
+        this._workers = workers;
+    }
+
+    /**
+     * Sets the part of the territory to show. Without a view, the view is fitted to the first frame exported.
+     *
+     * @param scale
+     *            The size of a cell in pixels
+     * @param centeredColumn
+     *            The column shown in the center
+     * @param centeredRow
+     *            The row shown in the center
+     */
+    public void setView(double scale, double centeredColumn, double centeredRow) {
+        if (scale <= 0) throw new IllegalArgumentException("The scale must be positive.");
+        this._scale = scale;
+        this._centeredColumn = centeredColumn;
+        this._centeredRow = centeredRow;
+        this._fit = false;
+    }
+
+    /**
+     * Writes one PNG file named {@code tick-NNNNNN.png} per tick into a directory
+     *
+     * @param replay
+     *            The recorded simulation
+     * @param ticks
+     *            The ticks to export
+     * @param directory
+     *            The directory to write the files to; it is created if it does not exist
+     * @return The files written in the order of the ticks
+     * @throws IOException
+     *             When the journal can not be read or a file can not be written
+     * @throws InterruptedException
+     *             When the calling thread is interrupted
+     */
+    public List<Path> export(SimulationReplay replay, int[] ticks, Path directory)
+            throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        int[] sorted = ticks.clone();
+        Arrays.sort(sorted); // replaying forwards is cheaper than seeking
+        List<Path> files = new ArrayList<>();
+        for (int tick : ticks) {
+            files.add(directory.resolve(String.format("tick-%06d.png", tick)));
+        }
+        if (sorted.length == 0) return files;
+
+        if (this._fit) {
+            SimulationRenderer renderer = new SimulationRenderer();
+            renderer.fit(replay.territoryAt(sorted[0]), this._width, this._height);
+            this._scale = renderer.scale();
+            this._centeredColumn = renderer.centeredColumn();
+            this._centeredRow = renderer.centeredRow();
+        }
+        ThreadLocal<SimulationRenderer> renderers = ThreadLocal.withInitial(() -> {
+            SimulationRenderer renderer = new SimulationRenderer();
+            renderer.setView(this._scale, this._centeredColumn, this._centeredRow);
+            return renderer;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(this._workers);
+        Semaphore waiting = new Semaphore(this._workers * FRAMES_PER_WORKER);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int tick : sorted) {
+                Territory tty = replay.territoryAt(tick);
+                Path file = directory.resolve(String.format("tick-%06d.png", tick));
+                waiting.acquire();
+                results.add(executor.submit(() -> {
+                    try {
+                        BufferedImage img = renderers.get().render(tty, this._width, this._height);
+                        ImageIO.write(img, "png", file.toFile());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        waiting.release();
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IllegalStateException("Rendering a frame failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return files;
+    }
+
+    /**
+     * Exports ticks of a journal into PNG files without a display.
+     * <p>
+     * Arguments: {@code <journal> <directory> [--from <tick>] [--to <tick>] [--step <ticks>] [--size <width>x<height>]
+     * [--workers <n>]}. By default every tick is exported in 640x480 pixels with one worker per processor.
+     *
+     * @param args
+     *            The command line arguments
+     * @throws IOException
+     *             When the journal can not be read or a file can not be written
+     * @throws InterruptedException
+     *             When the main thread is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 2) throw new IllegalArgumentException("A journal and a directory are required.");
+        int from = 0;
+        int to = Integer.MAX_VALUE;
+        int step = 1;
+        int width = 640;
+        int height = 480;
+        int workers = Runtime.getRuntime().availableProcessors();
+        for (int i = 2; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--from":
+                    from = Integer.parseInt(args[++i]);
+                    break;
+                case "--to":
+                    to = Integer.parseInt(args[++i]);
+                    break;
+                case "--step":
+                    step = Integer.parseInt(args[++i]);
+                    break;
+                case "--size":
+                    String[] size = args[++i].split("x");
+                    width = Integer.parseInt(size[0]);
+                    height = Integer.parseInt(size[1]);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (step < 1) throw new IllegalArgumentException("The step must be positive.");
+
+        try (SimulationReplay replay = new SimulationReplay(Paths.get(args[0]))) {
+            to = Math.min(to, replay.lastTick());
+            int[] ticks = new int[Math.max(0, ((to - from) / step) + 1)];
+            for (int i = 0; i < ticks.length; ++i) {
+                ticks[i] = from + (i * step);
+            }
+            new PngExporter(width, height, workers).export(replay, ticks, Paths.get(args[1]));
+        }
+    }
+}
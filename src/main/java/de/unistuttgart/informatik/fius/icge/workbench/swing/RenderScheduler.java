@@ -0,0 +1,76 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.workbench.swing;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import javax.swing.Timer;
+
+/**
+ * Renders frames at a fixed rate, but only when something changed.
+ * <p>
+ * Other threads only request a frame, which is cheap and can be done as often as needed. On every beat of the timer the
+ * scheduler renders a frame on the event dispatch thread if one was requested or the state shown changed since the last
+ * frame.
+ */
+class RenderScheduler {
+    /** The default number of frames per second. */
+    static final int DEFAULT_FPS = 60;
+
+    private final Timer _timer;
+    private final BooleanSupplier _changed;
+    private final Runnable _render;
+    private final AtomicBoolean _requested = new AtomicBoolean(true);
+
+    /**
+     * Creates a new render scheduler
+     *
+     * @param framesPerSecond
+     *            The maximum number of frames per second
+     * @param changed
+     *            Checks whether the state shown changed since it was last called; called on the event dispatch thread
+     * @param render
+     *            Renders a frame; called on the event dispatch thread
+     */
+    RenderScheduler(int framesPerSecond, BooleanSupplier changed, Runnable render) {
+        if (framesPerSecond < 1) throw new IllegalArgumentException("The frame rate must be positive.");
+        this._changed = changed;
+        this._render = render;
+        this._timer = new Timer(1000 / framesPerSecond, e -> this.beat());
+        this._timer.setCoalesce(true); // skip beats instead of catching up
+    }
+
+    /**
+     * Starts rendering frames
+     */
+    void start() {
+        this._timer.start();
+    }
+
+    /**
+     * Stops rendering frames
+     */
+    void stop() {
+        this._timer.stop();
+    }
+
+    /**
+     * Requests a frame to be rendered on the next beat. Can be called from any thread.
+     */
+    void requestFrame() {
+        this._requested.set(true);
+    }
+
+    private void beat() {
+        boolean changed = this._changed.getAsBoolean(); // always called, so that it sees every state
+        if (this._requested.getAndSet(false) || changed) {
+            this._render.run();
+        }
+    }
+}
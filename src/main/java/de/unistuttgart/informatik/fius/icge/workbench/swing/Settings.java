@@ -8,6 +8,7 @@
 package de.unistuttgart.informatik.fius.icge.workbench.swing;
 
 import de.unistuttgart.informatik.fius.icge.animations.SimulationAnimator;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
 
 class Settings {
     
@@ -16,32 +17,44 @@ class Settings {
     public final double scale;
     public final double centeredCol;
     public final double centeredRow;
+    /** The past territory shown instead of the current one or null. */
+    public final Territory historic;
 
     public Settings(boolean opened, SimulationAnimator animator, double scale, double centeredCol, double centeredRow) {
+        this(opened, animator, scale, centeredCol, centeredRow, null);
+    }
+    
+    public Settings(boolean opened, SimulationAnimator animator, double scale, double centeredCol, double centeredRow,
+            Territory historic) {
         this.opened = opened;
         this.animator = animator;
         this.scale = scale;
         this.centeredCol = centeredCol;
         this.centeredRow = centeredRow;
+        this.historic = historic;
     }
     
     public Settings setOpened(boolean opened) {
-        return new Settings(opened, this.animator, this.scale, this.centeredCol, this.centeredRow);
+        return new Settings(opened, this.animator, this.scale, this.centeredCol, this.centeredRow, this.historic);
     }
     
     public Settings setAnimator(SimulationAnimator animator) {
-        return new Settings(this.opened, animator, this.scale, this.centeredCol, this.centeredRow);
+        return new Settings(this.opened, animator, this.scale, this.centeredCol, this.centeredRow, null);
     }
     
     public Settings setScale(double scale) {
-        return new Settings(this.opened, this.animator, scale, this.centeredCol, this.centeredRow);
+        return new Settings(this.opened, this.animator, scale, this.centeredCol, this.centeredRow, this.historic);
     }
     
     public Settings setCenteredColumn(double centeredCol) {
-        return new Settings(this.opened, this.animator, this.scale, centeredCol, this.centeredRow);
+        return new Settings(this.opened, this.animator, this.scale, centeredCol, this.centeredRow, this.historic);
     }
     
     public Settings setCenteredRow(double centeredRow) {
-        return new Settings(this.opened, this.animator, this.scale, this.centeredCol, centeredRow);
+        return new Settings(this.opened, this.animator, this.scale, this.centeredCol, centeredRow, this.historic);
+    }
+    
+    public Settings setHistoric(Territory historic) {
+        return new Settings(this.opened, this.animator, this.scale, this.centeredCol, this.centeredRow, historic);
     }
 }
@@ -9,26 +9,31 @@ package de.unistuttgart.informatik.fius.icge.workbench.swing;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.Image;
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
-import java.awt.color.ColorSpace;
+import java.awt.Toolkit;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
-import java.awt.image.BufferedImage;
-import java.awt.image.ColorConvertOp;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 import javax.swing.JPanel;
 
 import de.unistuttgart.informatik.fius.icge.animations.AnimatedTerritory;
-import de.unistuttgart.informatik.fius.icge.simulation.Wall.WallState;
+import de.unistuttgart.informatik.fius.icge.animations.Animation;
+import de.unistuttgart.informatik.fius.icge.animations.Animation.AnimationType;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
 import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.TerritoryDelta;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 import de.unistuttgart.informatik.fius.icge.workbench.tools.ToolHandler;
 
 public class SimPanel extends JPanel {
     private static final long serialVersionUID = 8651840223154690457L;
+    /** The number of changed regions above which the whole panel is repainted at once. */
+    private static final int MAX_DIRTY_REGIONS = 16;
 
     private final SwingView _view;
     private Graphics _g;
@@ -41,6 +46,18 @@ public class SimPanel extends JPanel {
     private boolean _mouseInside = false;
     private AnimatedTerritory _animated;
     private ToolHandler _toolHandler;
+    private final SimulationRenderer _renderer = new SimulationRenderer();
+
+    // what was shown after the last call of repaintChanges
+    private Settings _paintedSettings;
+    private boolean _paintedRunning;
+    private int _paintedWidth, _paintedHeight;
+    private Territory _paintedTerritory;
+    private long _paintedVersion;
+    private AnimatedTerritory _paintedAnimated;
+    private List<Rectangle> _paintedAnimations = new ArrayList<>();
+    private Rectangle _paintedOverlay;
+    private boolean _paintedMouseDown;
 
     public SimPanel(SwingView view, ToolHandler th) {
         this._toolHandler = th;
@@ -54,7 +71,7 @@ public class SimPanel extends JPanel {
                 if (e.getButton() == MouseEvent.BUTTON1) {
                     SimPanel.this._mouseDown = true;
                     SimPanel.this.updateSettings();
-                    if (SimPanel.this._s.animator != null) {
+                    if ((SimPanel.this._s.animator != null) && (SimPanel.this._s.historic == null)) {
                         SimPanel.this.handleMousePress();
                     }
                     SimPanel.this._view.update();
@@ -66,7 +83,7 @@ public class SimPanel extends JPanel {
                 if (e.getButton() == MouseEvent.BUTTON1) {
                     SimPanel.this._mouseDown = false;
                     SimPanel.this.updateSettings();
-                    if (SimPanel.this._s.animator != null) {
+                    if ((SimPanel.this._s.animator != null) && (SimPanel.this._s.historic == null)) {
                         SimPanel.this.handleMouseRelease();
                     }
                     SimPanel.this._view.update();
@@ -107,11 +124,146 @@ public class SimPanel extends JPanel {
         this._g = g;
         this.updateSettings();
         this.updateExtents();
-        if (this._s.animator != null) {
-            this.drawGrid();
-            this.drawWorldObjects();
+        if (this._s.animator == null) {
+            Rectangle clip = g.getClipBounds() == null ? this._bounds : g.getClipBounds();
+            g.setColor(this.getBackground()); // only parts of the panel may be repainted, so nothing is painted below it
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        } else {
+            this._renderer.setColors(this.getBackground(), g.getColor());
+            this._renderer.setGraphicsConfiguration(this.getGraphicsConfiguration());
+            Simulation sim = this._s.animator.simulation();
+            this._renderer.render((Graphics2D) g, this._bounds.width, this._bounds.height, this._animated, sim.tickCount(),
+                    !sim.running());
             this.drawMouseOverlay();
         }
+        Toolkit.getDefaultToolkit().sync(); // show the frame now instead of whenever the window system flushes
+    }
+
+    /**
+     * Repaints the cells of this panel which changed since this method was last called: world objects that were added,
+     * removed or are animated and the mouse overlay. The rest of the panel and the frame is not repainted. When the view
+     * itself changed, the whole panel is repainted. Must be called on the event dispatch thread.
+     */
+    void repaintChanges() {
+        this.updateSettings();
+        this.updateExtents();
+        Simulation sim = this._s.animator == null ? null : this._s.animator.simulation();
+        boolean running = (sim != null) && sim.running();
+        Territory tty = this._animated == null ? null : this._animated.territory();
+        List<Rectangle> animations = this.animationCells();
+        Rectangle overlay = this.overlayCells();
+
+        boolean full = (this._s != this._paintedSettings) || (running != this._paintedRunning)
+                || (this.getWidth() != this._paintedWidth) || (this.getHeight() != this._paintedHeight);
+        List<Rectangle> dirty = new ArrayList<>();
+        if (!full && (tty != this._paintedTerritory)) {
+            List<TerritoryDelta> deltas = (tty == null) || (this._paintedTerritory == null) ? null
+                    : this._animated.deltasSince(this._paintedVersion);
+            if (deltas == null) {
+                full = true; // too many changes or a different territory
+            } else {
+                for (TerritoryDelta delta : deltas) {
+                    for (WorldObject wob : delta.removed()) {
+                        dirty.add(new Rectangle(wob.column, wob.row, 1, 1));
+                    }
+                    for (WorldObject wob : delta.added()) {
+                        dirty.add(new Rectangle(wob.column, wob.row, 1, 1));
+                    }
+                }
+                if (overlay != null) {
+                    dirty.add(overlay); // whether a tool can be applied may have changed
+                }
+            }
+        }
+        if (!full && (this._animated != this._paintedAnimated)) {
+            dirty.addAll(this._paintedAnimations);
+            dirty.addAll(animations);
+        }
+        if (!full && (!Objects.equals(overlay, this._paintedOverlay) || (this._mouseDown != this._paintedMouseDown))) {
+            if (this._paintedOverlay != null) {
+                dirty.add(this._paintedOverlay);
+            }
+            if (overlay != null) {
+                dirty.add(overlay);
+            }
+        }
+
+        this._paintedSettings = this._s;
+        this._paintedRunning = running;
+        this._paintedWidth = this.getWidth();
+        this._paintedHeight = this.getHeight();
+        this._paintedTerritory = tty;
+        this._paintedVersion = this._animated == null ? 0 : this._animated.version();
+        this._paintedAnimated = this._animated;
+        this._paintedAnimations = animations;
+        this._paintedOverlay = overlay;
+        this._paintedMouseDown = this._mouseDown;
+
+        if (full || (dirty.size() > MAX_DIRTY_REGIONS)) {
+            this.repaint();
+            return;
+        }
+        for (Rectangle cells : dirty) {
+            Rectangle pixels = this.cellsToPixels(cells).intersection(this._bounds);
+            if (!pixels.isEmpty()) {
+                this.repaint(pixels); // merged by the repaint manager into one paint
+            }
+        }
+    }
+
+    /**
+     * @return The cells covered by each running animation
+     */
+    private List<Rectangle> animationCells() {
+        List<Rectangle> cells = new ArrayList<>();
+        if ((this._animated == null) || (this._s.historic != null)) return cells;
+        for (WorldObject wob : this._animated.animatedWorldObjects()) {
+            Animation anim = this._animated.animation(wob);
+            Rectangle rect = new Rectangle(wob.column, wob.row, 1, 1);
+            if ((anim != null) && (anim.type == AnimationType.MOVE)) {
+                switch (wob.direction) {
+                    default:
+                    case EAST:
+                        rect.add(new Rectangle(wob.column - anim.distance, wob.row, 1, 1));
+                    break;
+                    case NORTH:
+                        rect.add(new Rectangle(wob.column, wob.row + anim.distance, 1, 1));
+                    break;
+                    case WEST:
+                        rect.add(new Rectangle(wob.column + anim.distance, wob.row, 1, 1));
+                    break;
+                    case SOUTH:
+                        rect.add(new Rectangle(wob.column, wob.row - anim.distance, 1, 1));
+                    break;
+                }
+            }
+            cells.add(rect);
+        }
+        return cells;
+    }
+
+    /**
+     * @return The cells covered by the mouse overlay or null if there is none
+     */
+    private Rectangle overlayCells() {
+        if (!this._mouseInside || (this._s.animator == null) || (this._s.historic != null)) return null;
+        if (!this._toolHandler.currentToolIsAreaTool())
+            return new Rectangle(this._endCol, this._endRow, 1, 1);
+        return new Rectangle(this._startCol, this._startRow, (this._endCol - this._startCol) + 1,
+                (this._endRow - this._startRow) + 1);
+    }
+
+    /**
+     * @return The pixels covered by the given cells, or by their blocks when zoomed out, including the grid lines and a
+     *         small margin
+     */
+    private Rectangle cellsToPixels(Rectangle cells) {
+        Rectangle affected = this._renderer.affectedCells(cells);
+        int l = (int) Math.floor(this._x0 + (this._s.scale * (affected.x - 0.5))) - 2;
+        int t = (int) Math.floor(this._y0 + (this._s.scale * (affected.y - 0.5))) - 2;
+        int r = (int) Math.ceil(this._x0 + (this._s.scale * ((affected.x + affected.width) - 0.5))) + 2;
+        int b = (int) Math.ceil(this._y0 + (this._s.scale * ((affected.y + affected.height) - 0.5))) + 2;
+        return new Rectangle(l, t, r - l, b - t);
     }
 
     private void updateSettings() {
@@ -119,14 +271,21 @@ public class SimPanel extends JPanel {
     }
 
     private void updateExtents() {
-        this._bounds = this._g.getClipBounds();
+        this._bounds = new Rectangle(0, 0, this.getWidth(), this.getHeight());
         this._x0 = (0.5 * this._bounds.width) - (this._s.centeredCol * this._s.scale);
         this._y0 = (0.5 * this._bounds.height) - (this._s.centeredRow * this._s.scale);
+        this._renderer.setView(this._s.scale, this._s.centeredCol, this._s.centeredRow);
         this._startCol = this.convertToColumn(Math.min(this._pressX, this._currentX));
         this._startRow = this.convertToRow(Math.min(this._pressY, this._currentY));
         this._endCol = this.convertToColumn(Math.max(this._pressX, this._currentX));
         this._endRow = this.convertToRow(Math.max(this._pressY, this._currentY));
-        this._animated = this._s.animator == null ? null : this._s.animator.animated();
+        if (this._s.animator == null) {
+            this._animated = null;
+        } else if (this._s.historic != null) {
+            this._animated = new AnimatedTerritory(this._s.historic); // past territories are shown without animations
+        } else {
+            this._animated = this._s.animator.animated();
+        }
     }
 
     private int convertToColumn(int x) {
@@ -137,36 +296,8 @@ public class SimPanel extends JPanel {
         return (int) Math.round((y - this._y0) / this._s.scale);
     }
 
-    private Territory addConstruction(Territory tty) {
-        for (int y = this._startRow; y <= this._endRow; ++y) {
-            for (int x = this._startCol; x <= this._endCol; ++x) {
-                int captX = x, captY = y;
-                if (!tty.containsWith(wob -> (wob.column == captX) && (wob.row == captY))) {
-                    tty = tty.add(new WorldObject(new WallState(), x, y));
-                }
-            }
-        }
-        return tty;
-    }
-
-    private Territory addDemolishing(Territory tty) {
-        Image img = Images.image("cross.png");
-        for (int y = this._startRow; y <= this._endRow; ++y) {
-            for (int x = this._startCol; x <= this._endCol; ++x) {
-                int captX = x, captY = y;
-                Territory oldTty = tty;
-                tty = oldTty.removeIf(
-                        wob -> (wob.column == captX) && (wob.row == captY) && (wob.state.getClass() == WallState.class));
-                if (tty != oldTty) {
-                    this.drawImage(x, y, img);
-                }
-            }
-        }
-        return tty;
-    }
-
     private void drawMouseOverlay() {
-        if (!this._mouseInside) return;
+        if (!this._mouseInside || (this._s.historic != null)) return;
         int startRow = this._startRow;
         int startCol = this._startCol;
         // When the current tool is not an area tool, we don't want to overlay an area
@@ -174,99 +305,19 @@ public class SimPanel extends JPanel {
             startRow = this._endRow;
             startCol = this._endCol;
         }
-        for (int row = startRow; row <= this._endRow; ++row) {
-            for (int col = startCol; col <= this._endCol; ++col) {
-                int l = (int) (this._x0 + (this._s.scale * (col - 0.5f)));
-                int r = (int) (this._x0 + (this._s.scale * (col + 0.5f)));
-                int t = (int) (this._y0 + (this._s.scale * (row - 0.5f)));
-                int b = (int) (this._y0 + (this._s.scale * (row + 0.5f)));
-
-                boolean highlighted;
-                if (this._mouseDown) {
-                    highlighted = this._toolHandler.canApply(this._s.animator.simulation(), this._startCol, this._endCol,
-                            this._startRow, this._endRow);
-                } else {
-                    highlighted = this._toolHandler.canApply(this._s.animator.simulation(), this._endCol, this._endRow);
-                }
-
-                this._g.setColor(highlighted ? new Color(0, 255, 40, 50) : new Color(0, 40, 120, 50));
-                this._g.fillRect(l, t, r - l, b - t);
-            }
-        }
-    }
-
-    private void drawGrid() {
-        double firstX = remainder(this._x0 - (0.5 * this._s.scale), this._s.scale);
-        double firstY = remainder(this._y0 - (0.5 * this._s.scale), this._s.scale);
-        for (double x = firstX; x <= this._bounds.width; x += this._s.scale) {
-            int ix = (int) x;
-            this._g.drawLine(ix, 0, ix, this._bounds.height);
-        }
-        for (double y = firstY; y <= this._bounds.height; y += this._s.scale) {
-            int iy = (int) y;
-            this._g.drawLine(0, iy, this._bounds.width, iy);
-        }
-    }
-
-    private static double remainder(double a, double b) {
-        double q = a / b;
-        return b * (q - Math.floor(q));
-    }
-
-    private void drawWorldObjects() {
-        ArrayList<WorldObject> wobs = this._animated.territory().worldObjects();
-        if (wobs.isEmpty()) return;
-        WorldObject nextWob = wobs.get(0);
-        int drawCount = 1;
-        for (int i = 1; i <= wobs.size(); ++i) {
-            WorldObject lastWob = nextWob;
-            drawWorldObject(lastWob);
-            if (i != wobs.size()) {
-                nextWob = wobs.get(i);
-                if (lastWob.state.getClass() == nextWob.state.getClass() && lastWob.isSamePos(nextWob)) {
-                    ++drawCount;
-                    continue;
-                }
-            }
-            drawCount(lastWob.column, lastWob.row, drawCount);
-            drawCount = 1;
-        }
-    }
-
-    private void drawWorldObject(WorldObject wob) {
-        int currentTick = this._s.animator.simulation().tickCount();
-        AnimationInterpreter interpreter = new AnimationInterpreter(this._animated, wob, currentTick);
-
-        BufferedImage img = interpreter.image();
-        if (img != null) {
-            this.drawImage(interpreter.column(), interpreter.row(), img);
-        }
-
-        if (interpreter.inAnimation() && !this._s.animator.simulation().running()) {
-            // render the shadow now such that it's over the (animated) image
-            BufferedImage unanimated = interpreter.unanimatedImage();
-            BufferedImage grayScale = new BufferedImage(unanimated.getWidth(), unanimated.getHeight(),
-                    BufferedImage.TYPE_INT_ARGB);
-            ColorConvertOp op = new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_GRAY), null);
-            op.filter(unanimated, grayScale);
-            this.drawImage(wob.column, wob.row, grayScale);
-        }
-    }
-
-    private void drawCount(int col, int row, int count) {
-        if (count > 1) {
-            int x = (int) (this._x0 + (this._s.scale * (col - 0.45f)));
-            int y = (int) (this._y0 + (this._s.scale * (row + 0.45f)));
-            this._g.drawString(String.valueOf(count), x, y);
+        boolean highlighted;
+        if (this._mouseDown) {
+            highlighted = this._toolHandler.canApply(this._s.animator.simulation(), this._startCol, this._endCol,
+                    this._startRow, this._endRow);
+        } else {
+            highlighted = this._toolHandler.canApply(this._s.animator.simulation(), this._endCol, this._endRow);
         }
-    }
-
-    private void drawImage(float col, float row, Image img) {
-        int l = (int) (this._x0 + (this._s.scale * (col - 0.5f)));
-        int r = (int) (this._x0 + (this._s.scale * (col + 0.5f)));
-        int t = (int) (this._y0 + (this._s.scale * (row - 0.5f)));
-        int b = (int) (this._y0 + (this._s.scale * (row + 0.5f)));
-        this._g.drawImage(img, l, t, r - l, b - t, null);
+        this._g.setColor(highlighted ? new Color(0, 255, 40, 50) : new Color(0, 40, 120, 50));
+        int l = (int) (this._x0 + (this._s.scale * (startCol - 0.5f)));
+        int r = (int) (this._x0 + (this._s.scale * (this._endCol + 0.5f)));
+        int t = (int) (this._y0 + (this._s.scale * (startRow - 0.5f)));
+        int b = (int) (this._y0 + (this._s.scale * (this._endRow + 0.5f)));
+        this._g.fillRect(l, t, r - l, b - t); // one rectangle for all cells, which are highlighted alike
     }
 
     private void handleMousePress() {
@@ -0,0 +1,466 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.workbench.swing;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import de.unistuttgart.informatik.fius.icge.animations.AnimatedTerritory;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.TerritoryDelta;
+import de.unistuttgart.informatik.fius.icge.territory.TerritorySummary;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
+
+/**
+ * Draws territories: the grid, the sprites of the world objects, the number of stacked world objects and the animations
+ * interpreted by {@link AnimationInterpreter}.
+ * <p>
+ * The renderer draws onto any {@link Graphics2D}, so it is used by the {@link SimPanel} as well as to draw into images
+ * without a display. It caches scaled sprites and prerendered tiles, so a renderer should be reused for consecutive
+ * frames, but it must only be used by one thread at a time.
+ * <p>
+ * Below {@value #DETAIL_SCALE} pixels per cell, sprites and grid lines can not be told apart anymore. Instead, the
+ * renderer draws square blocks of cells from a {@link TerritorySummary}, each in the average color of the sprites in
+ * it and the more opaque the more world objects it contains. The cost of such frames only depends on the number of
+ * pixels, not on the size of the territory.
+ */
+public class SimulationRenderer {
+    /** The size of a cell in pixels below which blocks are drawn instead of sprites. */
+    public static final double DETAIL_SCALE = 8;
+    /** The minimum size of a block in pixels. */
+    private static final int MIN_BLOCK_PIXELS = 4;
+    /** The opacity of a block containing a single world object. */
+    private static final float MIN_BLOCK_ALPHA = 0.35f;
+
+    private final SpriteCache _sprites = new SpriteCache();
+    private final StaticLayer _staticLayer = new StaticLayer();
+    private double _scale = 60;
+    private double _centeredColumn;
+    private double _centeredRow;
+    private Color _background = Color.WHITE;
+    private Color _foreground = Color.BLACK;
+    private GraphicsConfiguration _config;
+    private TerritorySummary _summary;
+    private Territory _summarized;
+    private long _summarizedVersion;
+    private final HashMap<String, Color> _spriteColors = new HashMap<>();
+    private BufferedImage _blocks;
+
+    // valid while rendering
+    private Graphics2D _g;
+    private Rectangle _clip;
+    private double _x0, _y0;
+    private AnimatedTerritory _animated;
+    private int _tick;
+    private boolean _paused;
+
+    /**
+     * @return The size of a cell in pixels
+     */
+    public double scale() {
+        return this._scale;
+    }
+
+    /**
+     * @return The column shown in the center
+     */
+    public double centeredColumn() {
+        return this._centeredColumn;
+    }
+
+    /**
+     * @return The row shown in the center
+     */
+    public double centeredRow() {
+        return this._centeredRow;
+    }
+
+    /**
+     * Sets the part of the territory to show
+     *
+     * @param scale
+     *            The size of a cell in pixels
+     * @param centeredColumn
+     *            The column shown in the center
+     * @param centeredRow
+     *            The row shown in the center
+     */
+    public void setView(double scale, double centeredColumn, double centeredRow) {
+        if (scale <= 0) throw new IllegalArgumentException("The scale must be positive.");
+        if (scale != this._scale) {
+            this._sprites.clear();
+        }
+        this._scale = scale;
+        this._centeredColumn = centeredColumn;
+        this._centeredRow = centeredRow;
+    }
+
+    /**
+     * Sets the view such that all world objects of a territory fit into an area
+     *
+     * @param tty
+     *            The territory
+     * @param width
+     *            The width of the area in pixels
+     * @param height
+     *            The height of the area in pixels
+     */
+    public void fit(Territory tty, int width, int height) {
+        List<WorldObject> wobs = tty.worldObjects();
+        if (wobs.isEmpty()) {
+            this.setView(this._scale, 0, 0);
+            return;
+        }
+        int minColumn = Integer.MAX_VALUE, maxColumn = Integer.MIN_VALUE;
+        int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+        for (WorldObject wob : wobs) {
+            minColumn = Math.min(minColumn, wob.column);
+            maxColumn = Math.max(maxColumn, wob.column);
+            minRow = Math.min(minRow, wob.row);
+            maxRow = Math.max(maxRow, wob.row);
+        }
+        double scale = Math.min(width / (maxColumn - minColumn + 1.0), height / (maxRow - minRow + 1.0));
+        this.setView(scale, 0.5 * (minColumn + maxColumn), 0.5 * (minRow + maxRow));
+    }
+
+    /**
+     * Sets the colors
+     *
+     * @param background
+     *            The color of the background
+     * @param foreground
+     *            The color of the grid and the numbers
+     */
+    public void setColors(Color background, Color foreground) {
+        this._background = background;
+        this._foreground = foreground;
+    }
+
+    /**
+     * Sets the configuration of the screen the renderer draws on, so that the cached images are compatible with it.
+     *
+     * @param config
+     *            The configuration or null if the renderer does not draw on a screen
+     */
+    public void setGraphicsConfiguration(GraphicsConfiguration config) {
+        this._config = config;
+    }
+
+    /**
+     * @param width
+     *            The width of the area drawn on
+     * @return The x coordinate of the center of column 0
+     */
+    public double originX(int width) {
+        return (0.5 * width) - (this._centeredColumn * this._scale);
+    }
+
+    /**
+     * @param height
+     *            The height of the area drawn on
+     * @return The y coordinate of the center of row 0
+     */
+    public double originY(int height) {
+        return (0.5 * height) - (this._centeredRow * this._scale);
+    }
+
+    /**
+     * Draws a territory within the clip of the graphics
+     *
+     * @param g
+     *            The graphics to draw with
+     * @param width
+     *            The width of the area drawn on
+     * @param height
+     *            The height of the area drawn on
+     * @param animated
+     *            The territory and its animations
+     * @param tick
+     *            The current tick, which determines the progress of the animations
+     * @param paused
+     *            Whether the simulation is paused, in which case animated world objects also get a grayscale shadow at
+     *            their final position
+     */
+    public void render(Graphics2D g, int width, int height, AnimatedTerritory animated, int tick, boolean paused) {
+        this._g = g;
+        this._clip = g.getClipBounds() == null ? new Rectangle(0, 0, width, height) : g.getClipBounds();
+        this._x0 = this.originX(width);
+        this._y0 = this.originY(height);
+        this._animated = animated;
+        this._tick = tick;
+        this._paused = paused;
+        try {
+            g.setColor(this._background);
+            g.fillRect(this._clip.x, this._clip.y, this._clip.width, this._clip.height);
+            g.setColor(this._foreground);
+            if (this._scale < DETAIL_SCALE) {
+                this.drawSummary(animated);
+                return;
+            }
+            List<WorldObject> dynamic = this._staticLayer.update(animated);
+            this._staticLayer.paint(g, this._x0, this._y0, this._scale, width, height, this._foreground, this._sprites,
+                    this._config);
+            this.drawWorldObjects(dynamic);
+        } finally {
+            this._g = null;
+            this._animated = null;
+        }
+    }
+
+    /**
+     * Get the cells that have to be drawn again when something changed in the given cells. These are the given cells
+     * unless blocks of cells are drawn.
+     *
+     * @param cells
+     *            The changed cells
+     * @return The cells to draw again
+     */
+    public Rectangle affectedCells(Rectangle cells) {
+        if (this._scale >= DETAIL_SCALE) return cells;
+        int blockCells = this.blockCells();
+        int left = Math.floorDiv(cells.x, blockCells) * blockCells;
+        int top = Math.floorDiv(cells.y, blockCells) * blockCells;
+        int right = (Math.floorDiv((cells.x + cells.width) - 1, blockCells) + 1) * blockCells;
+        int bottom = (Math.floorDiv((cells.y + cells.height) - 1, blockCells) + 1) * blockCells;
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Draws a territory without animations into a new image
+     *
+     * @param tty
+     *            The territory
+     * @param width
+     *            The width of the image
+     * @param height
+     *            The height of the image
+     * @return The image
+     */
+    public BufferedImage render(Territory tty, int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.render(img, new AnimatedTerritory(tty), 0);
+        return img;
+    }
+
+    /**
+     * Draws a territory into an existing image
+     *
+     * @param img
+     *            The image to draw into
+     * @param animated
+     *            The territory and its animations
+     * @param tick
+     *            The current tick
+     */
+    public void render(BufferedImage img, AnimatedTerritory animated, int tick) {
+        Graphics2D g = img.createGraphics();
+        try {
+            this.render(g, img.getWidth(), img.getHeight(), animated, tick, false);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * @return The number of columns and rows of the blocks drawn at the current scale
+     */
+    private int blockCells() {
+        int blockCells = 1;
+        while ((blockCells * this._scale) < MIN_BLOCK_PIXELS) {
+            blockCells <<= 1;
+        }
+        return blockCells;
+    }
+
+    private void drawSummary(AnimatedTerritory animated) {
+        int blockCells = this.blockCells();
+        Territory tty = animated.territory();
+        if ((this._summary == null) || (this._summary.blockCells() != blockCells)) {
+            this._summary = new TerritorySummary(tty, blockCells);
+        } else if (tty != this._summarized) {
+            List<TerritoryDelta> deltas = animated.deltasSince(this._summarizedVersion);
+            if (deltas == null) {
+                this._summary = new TerritorySummary(tty, blockCells);
+            } else {
+                deltas.forEach(this._summary::apply);
+            }
+        }
+        this._summarized = tty;
+        this._summarizedVersion = animated.version();
+        int firstColumn = Math.floorDiv(this.cellAt(this._clip.x, this._x0), blockCells);
+        int lastColumn = Math.floorDiv(this.cellAt(this._clip.x + this._clip.width, this._x0), blockCells);
+        int firstRow = Math.floorDiv(this.cellAt(this._clip.y, this._y0), blockCells);
+        int lastRow = Math.floorDiv(this.cellAt(this._clip.y + this._clip.height, this._y0), blockCells);
+        int columns = (lastColumn - firstColumn) + 1;
+        int rows = (lastRow - firstRow) + 1;
+
+        // one pixel per block, scaled up when drawn
+        if ((this._blocks == null) || (this._blocks.getWidth() != columns) || (this._blocks.getHeight() != rows)) {
+            this._blocks = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+        }
+        int[] pixels = ((DataBufferInt) this._blocks.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, 0);
+        if (((long) columns * rows) <= this._summary.size()) {
+            for (int row = firstRow; row <= lastRow; ++row) {
+                for (int column = firstColumn; column <= lastColumn; ++column) {
+                    TerritorySummary.Block block = this._summary.block(column, row);
+                    if (block != null) {
+                        pixels[(column - firstColumn) + ((row - firstRow) * columns)] = this.blockColor(block);
+                    }
+                }
+            }
+        } else { // most of the visible blocks are empty
+            this._summary.forEach(block -> {
+                int column = block.column - firstColumn;
+                int row = block.row - firstRow;
+                if ((column >= 0) && (column < columns) && (row >= 0) && (row < rows)) {
+                    pixels[column + (row * columns)] = this.blockColor(block);
+                }
+            });
+        }
+        this._g.drawImage(this._blocks, this.edge(this._x0, firstColumn * blockCells),
+                this.edge(this._y0, firstRow * blockCells), this.edge(this._x0, (lastColumn + 1) * blockCells),
+                this.edge(this._y0, (lastRow + 1) * blockCells), 0, 0, columns, rows, null);
+    }
+
+    /**
+     * @return The average color of the sprites in a block, the more opaque the more world objects it contains
+     */
+    private int blockColor(TerritorySummary.Block block) {
+        float red = 0, green = 0, blue = 0;
+        for (int i = 0; i < block.kinds(); ++i) {
+            Color color = this.spriteColor(block.spriteId(i));
+            float weight = (float) block.count(i) / block.total();
+            red += weight * color.getRed();
+            green += weight * color.getGreen();
+            blue += weight * color.getBlue();
+        }
+        int blockCells = this._summary.blockCells();
+        float density = Math.min(1f, (float) block.total() / (blockCells * blockCells));
+        int alpha = Math.round((MIN_BLOCK_ALPHA + ((1 - MIN_BLOCK_ALPHA) * density)) * 255);
+        return (alpha << 24) | (Math.min(255, Math.round(red)) << 16) | (Math.min(255, Math.round(green)) << 8)
+                | Math.min(255, Math.round(blue));
+    }
+
+    /**
+     * @return The average color of the opaque pixels of the unanimated sprite
+     */
+    private Color spriteColor(String spriteId) {
+        Color color = this._spriteColors.get(spriteId);
+        if (color == null) {
+            BufferedImage img;
+            try {
+                img = AnimationInterpreter.accessNoneAnimations().get(spriteId, Direction.EAST);
+            } catch (IllegalArgumentException e) {
+                img = null; // no sprite
+            }
+            color = img == null ? Color.GRAY : averageColor(img);
+            this._spriteColors.put(spriteId, color);
+        }
+        return color;
+    }
+
+    private static Color averageColor(BufferedImage img) {
+        long red = 0, green = 0, blue = 0, count = 0;
+        for (int y = 0; y < img.getHeight(); ++y) {
+            for (int x = 0; x < img.getWidth(); ++x) {
+                int argb = img.getRGB(x, y);
+                if ((argb >>> 24) < 128) {
+                    continue;
+                }
+                red += (argb >> 16) & 0xFF;
+                green += (argb >> 8) & 0xFF;
+                blue += argb & 0xFF;
+                ++count;
+            }
+        }
+        if (count == 0) return Color.GRAY;
+        return new Color((int) (red / count), (int) (green / count), (int) (blue / count));
+    }
+
+    /**
+     * @return The pixel coordinate of the left or top edge of a cell
+     */
+    private int edge(double origin, int cell) {
+        return (int) Math.floor(origin + (this._scale * (cell - 0.5)));
+    }
+
+    /**
+     * @return The cell containing a pixel coordinate
+     */
+    private int cellAt(int pixel, double origin) {
+        return (int) Math.floor(((pixel - origin) / this._scale) + 0.5);
+    }
+
+    private void drawWorldObjects(List<WorldObject> wobs) {
+        if (wobs.isEmpty()) return;
+        WorldObject nextWob = wobs.get(0);
+        int drawCount = 1;
+        for (int i = 1; i <= wobs.size(); ++i) {
+            WorldObject lastWob = nextWob;
+            this.drawWorldObject(lastWob);
+            if (i != wobs.size()) {
+                nextWob = wobs.get(i);
+                if ((lastWob.state.getClass() == nextWob.state.getClass()) && lastWob.isSamePos(nextWob)) {
+                    ++drawCount;
+                    continue;
+                }
+            }
+            this.drawCount(lastWob.column, lastWob.row, drawCount);
+            drawCount = 1;
+        }
+    }
+
+    private void drawWorldObject(WorldObject wob) {
+        if ((this._animated.animation(wob) == null) && !this.intersectsClip(wob.column, wob.row)) return;
+        AnimationInterpreter interpreter = new AnimationInterpreter(this._animated, wob, this._tick);
+
+        BufferedImage img = interpreter.image();
+        if (img != null) {
+            this.drawImage(interpreter.column(), interpreter.row(), img);
+        }
+
+        if (interpreter.inAnimation() && (interpreter.unanimatedImage() != null) && this._paused) {
+            // render the shadow now such that it's over the (animated) image
+            this.drawImage(wob.column, wob.row, AnimatedImages.grayscale(interpreter.unanimatedImage()));
+        }
+    }
+
+    private void drawCount(int col, int row, int count) {
+        if ((count > 1) && this.intersectsClip(col, row)) {
+            int x = (int) (this._x0 + (this._scale * (col - 0.45f)));
+            int y = (int) (this._y0 + (this._scale * (row + 0.45f)));
+            this._g.setColor(this._foreground);
+            this._g.drawString(String.valueOf(count), x, y);
+        }
+    }
+
+    private boolean intersectsClip(int col, int row) {
+        int l = (int) Math.floor(this._x0 + (this._scale * (col - 0.5))) - 2;
+        int t = (int) Math.floor(this._y0 + (this._scale * (row - 0.5))) - 2;
+        int size = (int) Math.ceil(this._scale) + 4;
+        return this._clip.intersects(l, t, size, size);
+    }
+
+    private void drawImage(float col, float row, Image img) {
+        int l = (int) (this._x0 + (this._scale * (col - 0.5f)));
+        int r = (int) (this._x0 + (this._scale * (col + 0.5f)));
+        int t = (int) (this._y0 + (this._scale * (row - 0.5f)));
+        int b = (int) (this._y0 + (this._scale * (row + 0.5f)));
+        this._g.drawImage(this._sprites.scaled(img, r - l, b - t, this._config), l, t, null);
+    }
+}
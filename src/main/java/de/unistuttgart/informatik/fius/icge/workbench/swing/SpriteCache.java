@@ -0,0 +1,104 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.workbench.swing;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+
+/**
+ * A cache of sprites scaled to the size they are drawn with.
+ * <p>
+ * The sprites are identified by their source images, which are shared by all world objects with the same sprite,
+ * direction and animation frame. The scaled images are compatible with the screen they are drawn on, so drawing them is a
+ * plain copy. The cache has to be cleared whenever the zoom changes.
+ */
+class SpriteCache {
+    /** The number of scaled images after which the cache is cleared, in case sizes keep changing. */
+    private static final int MAX_ENTRIES = 1024;
+
+    private final HashMap<Key, Image> _scaled = new HashMap<>();
+    private GraphicsConfiguration _config;
+
+    /**
+     * Get a sprite scaled to the given size
+     *
+     * @param img
+     *            The sprite
+     * @param width
+     *            The width in pixels
+     * @param height
+     *            The height in pixels
+     * @param config
+     *            The configuration of the screen the sprite is drawn on or null
+     * @return The scaled sprite
+     */
+    Image scaled(Image img, int width, int height, GraphicsConfiguration config) {
+        if ((width <= 0) || (height <= 0)) return img;
+        if (config != this._config) {
+            this._scaled.clear(); // moved to another screen
+            this._config = config;
+        }
+        Key key = new Key(img, width, height);
+        Image scaled = this._scaled.get(key);
+        if (scaled == null) {
+            if (this._scaled.size() >= MAX_ENTRIES) {
+                this._scaled.clear();
+            }
+            scaled = scale(img, width, height, config);
+            this._scaled.put(key, scaled);
+        }
+        return scaled;
+    }
+
+    /**
+     * Removes all scaled sprites
+     */
+    void clear() {
+        this._scaled.clear();
+    }
+
+    private static Image scale(Image img, int width, int height, GraphicsConfiguration config) {
+        BufferedImage scaled = config == null ? new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+                : config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.drawImage(img, 0, 0, width, height, null); // the same scaling Graphics.drawImage would use
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static final class Key {
+        private final Image _img;
+        private final int _width;
+        private final int _height;
+
+        Key(Image img, int width, int height) {
+            this._img = img;
+            this._width = width;
+            this._height = height;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return (this._img == other._img) && (this._width == other._width) && (this._height == other._height);
+        }
+
+        @Override
+        public int hashCode() {
+            return (((System.identityHashCode(this._img) * 31) + this._width) * 31) + this._height;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.workbench.swing;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import de.unistuttgart.informatik.fius.icge.animations.AnimatedTerritory;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.TerritoryDelta;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+
+/**
+ * The grid and the static world objects (see {@link de.unistuttgart.informatik.fius.icge.territory.EntityState#isStatic()})
+ * of a territory, drawn in advance into tiles.
+ * <p>
+ * When the territory changes, only the tiles containing static world objects that were added or removed are drawn
+ * again; the changes are taken from the deltas of the animated territory if it knows them. The tiles are placed by cell
+ * coordinates, so moving the view by whole pixels keeps them. All tiles are drawn again when the zoom or the fraction
+ * of a pixel the view is moved by changes. Only the visible tiles are kept.
+ */
+class StaticLayer {
+    /** The approximate size of a tile in pixels. */
+    private static final int TILE_PIXELS = 256;
+
+    private Territory _territory;
+    private long _version;
+    private final Set<WorldObject> _static = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final HashMap<Long, List<WorldObject>> _cells = new HashMap<>();
+    private List<WorldObject> _dynamic = new ArrayList<>();
+
+    /** The fractions of a pixel the center of cell 0 is moved by, which determine how the tiles are drawn. */
+    private double _fracX = Double.NaN, _fracY, _scale;
+    private int _tileCells;
+    private final HashMap<Long, Image> _tiles = new HashMap<>();
+
+    /**
+     * Updates the layer to a territory
+     *
+     * @param animated
+     *            The territory to show
+     * @return The world objects of the territory which are not static, in the order of the territory
+     */
+    List<WorldObject> update(AnimatedTerritory animated) {
+        Territory tty = animated.territory();
+        List<TerritoryDelta> deltas = this._territory == null ? null : animated.deltasSince(this._version);
+        this._version = animated.version();
+        if (tty == this._territory) return this._dynamic;
+        this._territory = tty;
+        if (deltas == null) {
+            this.rebuild(tty);
+            return this._dynamic;
+        }
+        for (TerritoryDelta delta : deltas) {
+            for (WorldObject wob : delta.removed()) {
+                if (!wob.state.isStatic()) {
+                    this.removeDynamic(wob);
+                } else if (this._static.remove(wob)) {
+                    this.removeFromCell(wob);
+                }
+            }
+            for (WorldObject wob : delta.added()) {
+                if (!wob.state.isStatic()) {
+                    this.addDynamic(wob);
+                } else if (this._static.add(wob)) {
+                    this.addToCell(wob);
+                }
+            }
+        }
+        return this._dynamic;
+    }
+
+    /**
+     * Updates the layer to a territory by comparing it with the static world objects shown
+     */
+    private void rebuild(Territory tty) {
+        List<WorldObject> dynamic = new ArrayList<>();
+        Set<WorldObject> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        int[] staticCount = { 0 };
+        tty.forEach(wob -> {
+            if (!wob.state.isStatic()) {
+                dynamic.add(wob);
+                return;
+            }
+            ++staticCount[0];
+            if (!this._static.contains(wob)) {
+                added.add(wob);
+            }
+        });
+        if ((staticCount[0] - added.size()) != this._static.size()) { // some static world objects were removed
+            Set<WorldObject> current = Collections.newSetFromMap(new IdentityHashMap<>());
+            tty.forEach(wob -> {
+                if (wob.state.isStatic()) {
+                    current.add(wob);
+                }
+            });
+            for (WorldObject wob : new ArrayList<>(this._static)) {
+                if (!current.contains(wob)) {
+                    this._static.remove(wob);
+                    this.removeFromCell(wob);
+                }
+            }
+        }
+        for (WorldObject wob : added) {
+            this._static.add(wob);
+            this.addToCell(wob);
+        }
+        this._dynamic = dynamic;
+    }
+
+    private void addToCell(WorldObject wob) {
+        this._cells.computeIfAbsent(cellKey(wob.column, wob.row), key -> new ArrayList<>(1)).add(wob);
+        this.invalidate(wob.column, wob.row);
+    }
+
+    private void removeFromCell(WorldObject wob) {
+        List<WorldObject> cell = this._cells.get(cellKey(wob.column, wob.row));
+        cell.remove(wob);
+        if (cell.isEmpty()) {
+            this._cells.remove(cellKey(wob.column, wob.row));
+        }
+        this.invalidate(wob.column, wob.row);
+    }
+
+    /**
+     * Inserts a dynamic world object after all world objects which are not greater, like the territory does
+     */
+    private void addDynamic(WorldObject wob) {
+        int low = 0;
+        int high = this._dynamic.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this._dynamic.get(middle).compareTo(wob) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        this._dynamic.add(low, wob);
+    }
+
+    private void removeDynamic(WorldObject wob) {
+        for (int i = 0; i < this._dynamic.size(); ++i) {
+            if (this._dynamic.get(i) == wob) {
+                this._dynamic.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Draws the visible tiles within the clip of the graphics
+     *
+     * @param g
+     *            The graphics to draw with
+     * @param x0
+     *            The x coordinate of the center of column 0
+     * @param y0
+     *            The y coordinate of the center of row 0
+     * @param scale
+     *            The size of a cell in pixels
+     * @param width
+     *            The width of the visible area
+     * @param height
+     *            The height of the visible area
+     * @param gridColor
+     *            The color of the grid
+     * @param sprites
+     *            The cache to take the scaled sprites from
+     * @param config
+     *            The configuration of the screen or null
+     */
+    void paint(Graphics g, double x0, double y0, double scale, int width, int height, Color gridColor,
+            SpriteCache sprites, GraphicsConfiguration config) {
+        double fracX = x0 - Math.floor(x0);
+        double fracY = y0 - Math.floor(y0);
+        if ((fracX != this._fracX) || (fracY != this._fracY) || (scale != this._scale)) {
+            this._fracX = fracX;
+            this._fracY = fracY;
+            this._scale = scale;
+            this._tileCells = Math.max(1, (int) (TILE_PIXELS / scale));
+            this._tiles.clear();
+        }
+        int offsetX = (int) Math.floor(x0); // the tiles are drawn as if the view was moved by the fractions only
+        int offsetY = (int) Math.floor(y0);
+        int firstColumn = Math.floorDiv(cellAt(0, x0, scale), this._tileCells);
+        int lastColumn = Math.floorDiv(cellAt(width, x0, scale), this._tileCells);
+        int firstRow = Math.floorDiv(cellAt(0, y0, scale), this._tileCells);
+        int lastRow = Math.floorDiv(cellAt(height, y0, scale), this._tileCells);
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, width, height);
+        }
+        Set<Long> visible = new HashSet<>();
+        for (int tileRow = firstRow; tileRow <= lastRow; ++tileRow) {
+            for (int tileColumn = firstColumn; tileColumn <= lastColumn; ++tileColumn) {
+                Long key = cellKey(tileColumn, tileRow);
+                visible.add(key);
+                int left = offsetX + edge(fracX, scale, tileColumn * this._tileCells);
+                int top = offsetY + edge(fracY, scale, tileRow * this._tileCells);
+                int right = offsetX + edge(fracX, scale, (tileColumn + 1) * this._tileCells);
+                int bottom = offsetY + edge(fracY, scale, (tileRow + 1) * this._tileCells);
+                if (!clip.intersects(left, top, right - left, bottom - top)) {
+                    continue;
+                }
+                Image tile = this._tiles.get(key);
+                if (tile == null) {
+                    tile = this.drawTile(tileColumn, tileRow, gridColor, sprites, config);
+                    this._tiles.put(key, tile);
+                }
+                g.drawImage(tile, left, top, null);
+            }
+        }
+        this._tiles.keySet().retainAll(visible);
+    }
+
+    private void invalidate(int column, int row) {
+        if (this._tileCells > 0) {
+            this._tiles.remove(cellKey(Math.floorDiv(column, this._tileCells), Math.floorDiv(row, this._tileCells)));
+        }
+    }
+
+    private Image drawTile(int tileColumn, int tileRow, Color gridColor, SpriteCache sprites,
+            GraphicsConfiguration config) {
+        int firstColumn = tileColumn * this._tileCells;
+        int firstRow = tileRow * this._tileCells;
+        int left = edge(this._fracX, this._scale, firstColumn);
+        int top = edge(this._fracY, this._scale, firstRow);
+        int width = Math.max(1, edge(this._fracX, this._scale, firstColumn + this._tileCells) - left);
+        int height = Math.max(1, edge(this._fracY, this._scale, firstRow + this._tileCells) - top);
+        BufferedImage tile = config == null ? new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+                : config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setColor(gridColor);
+            for (int i = 0; i < this._tileCells; ++i) {
+                int x = edge(this._fracX, this._scale, firstColumn + i) - left;
+                int y = edge(this._fracY, this._scale, firstRow + i) - top;
+                g.drawLine(x, 0, x, height);
+                g.drawLine(0, y, width, y);
+            }
+            for (int row = firstRow; row < (firstRow + this._tileCells); ++row) {
+                for (int column = firstColumn; column < (firstColumn + this._tileCells); ++column) {
+                    List<WorldObject> wobs = this._cells.get(cellKey(column, row));
+                    if ((wobs == null) || wobs.isEmpty()) {
+                        continue;
+                    }
+                    int l = edge(this._fracX, this._scale, column) - left;
+                    int t = edge(this._fracY, this._scale, row) - top;
+                    int r = edge(this._fracX, this._scale, column + 1) - left;
+                    int b = edge(this._fracY, this._scale, row + 1) - top;
+                    List<WorldObject> sorted = new ArrayList<>(wobs);
+                    Collections.sort(sorted);
+                    for (WorldObject wob : sorted) {
+                        Image img = AnimationInterpreter.accessNoneAnimations().get(wob.state.spriteId(), wob.direction);
+                        if (img != null) {
+                            g.drawImage(sprites.scaled(img, r - l, b - t, config), l, t, null);
+                        }
+                    }
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return tile;
+    }
+
+    /**
+     * @return The pixel coordinate of the left or top edge of a cell
+     */
+    private static int edge(double origin, double scale, int cell) {
+        return (int) Math.floor(origin + (scale * (cell - 0.5)));
+    }
+
+    /**
+     * @return The cell containing a pixel coordinate
+     */
+    private static int cellAt(int pixel, double origin, double scale) {
+        return (int) Math.floor(((pixel - origin) / scale) + 0.5);
+    }
+
+    private static Long cellKey(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+}
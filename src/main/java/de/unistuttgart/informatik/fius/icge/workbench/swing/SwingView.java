@@ -16,9 +16,12 @@ import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
+import de.unistuttgart.informatik.fius.icge.animations.AnimatedTerritory;
 import de.unistuttgart.informatik.fius.icge.animations.SimulationAnimator;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
 import de.unistuttgart.informatik.fius.icge.workbench.WorkbenchView;
+import de.unistuttgart.informatik.fius.icge.workbench.tools.HistoryController;
 import de.unistuttgart.informatik.fius.icge.workbench.tools.SimulationController;
 import de.unistuttgart.informatik.fius.icge.workbench.tools.ToolHandler;
 
@@ -29,9 +32,15 @@ public class SwingView implements WorkbenchView {
     private ToolBar _toolBar;
     private ToolHandler _toolHandler;
     private SimulationController _simulationController;
+    private HistoryController _historyController;
     private SimPanel _simPanel;
     private JSlider speedSlider;
     private Settings _settings = new Settings(true, null, 60.f, 0, 0);
+    private final RenderScheduler _renderScheduler = new RenderScheduler(RenderScheduler.DEFAULT_FPS, this::changed,
+            this::render);
+    private Settings _renderedSettings;
+    private AnimatedTerritory _renderedAnimated;
+    private int _renderedTick;
     
     public SwingView(String name) {
         EventQueue.invokeLater(() -> this.initFrame(name));
@@ -59,6 +68,17 @@ public class SwingView implements WorkbenchView {
         this.update();
     }
     
+    @Override
+    public Territory historic() {
+        return this._settings.historic;
+    }
+    
+    @Override
+    public void setHistoric(Territory tty) {
+        this._settings = this._settings.setHistoric(tty);
+        this.update();
+    }
+    
     @Override
     public double scale() {
         return this._settings.scale;
@@ -124,12 +144,13 @@ public class SwingView implements WorkbenchView {
         this.update();
     }
     
+    /**
+     * Requests the view to be repainted with the next frame. Frames are rendered at most
+     * {@value RenderScheduler#DEFAULT_FPS} times per second, so this may be called as often as needed.
+     */
     @Override
     public void update() {
-        EventQueue.invokeLater(() -> {
-            this._frame.validate();
-            this._frame.repaint();
-        });
+        this._renderScheduler.requestFrame();
     }
     
     // package private
@@ -140,6 +161,26 @@ public class SwingView implements WorkbenchView {
     
     // private
     
+    /**
+     * Checks whether the settings or the simulation changed since the last frame.
+     */
+    private boolean changed() {
+        Settings settings = this._settings;
+        AnimatedTerritory animated = settings.animator == null ? null : settings.animator.animated();
+        int tick = settings.animator == null ? 0 : settings.animator.simulation().tickCount();
+        if ((settings == this._renderedSettings) && (animated == this._renderedAnimated) && (tick == this._renderedTick))
+            return false;
+        this._renderedSettings = settings;
+        this._renderedAnimated = animated;
+        this._renderedTick = tick;
+        return true;
+    }
+    
+    private void render() {
+        this._frame.validate();
+        this._simPanel.repaintChanges(); // the other components repaint themselves when they change
+    }
+    
     private void initFrame(String name) {
         this._frame = new JFrame(name);
         this._frame.setSize((10 * 60) + 400, (5 * 60) + 200);
@@ -154,9 +195,11 @@ public class SwingView implements WorkbenchView {
         this.initToolBar(this._frame);
         this.initToolHandler();
         this.initSimulationController();
+        this.initHistoryController();
         this.initMainPanel(this._frame);
         
         this._frame.setVisible(true);
+        this._renderScheduler.start();
     }
     
     private void initToolBar(JFrame frame) {
@@ -172,6 +215,10 @@ public class SwingView implements WorkbenchView {
         this._simulationController = new SimulationController(this._toolBar, this);
     }
     
+    private void initHistoryController() {
+        this._historyController = new HistoryController(this._toolBar, this);
+    }
+    
     private void initMainPanel(JFrame frame) {
         JPanel main = new JPanel(new BorderLayout());
         frame.getContentPane().add(BorderLayout.CENTER, main);
@@ -56,6 +56,18 @@ public class ToolBar extends JToolBar {
     public void addButton(JButton button, int position) {
         this.add(button, position);
     }
+    
+    /**
+     * Adds a slider to this toolbar.
+     * 
+     * @param slider
+     *            The slider to add.
+     * @param position
+     *            The position of the slider
+     */
+    public void addSlider(JSlider slider, int position) {
+        this.add(slider, position);
+    }
 
     private JSlider initSpeedSlider() {
         speedSlider = new JSlider(JSlider.HORIZONTAL, 0, 50, 10);
@@ -0,0 +1,452 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.workbench.swing;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import de.unistuttgart.informatik.fius.icge.animations.AnimatedTerritory;
+import de.unistuttgart.informatik.fius.icge.simulation.journal.SimulationReplay;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+
+/**
+ * Encodes a range of ticks of a recorded simulation into an animated GIF or an MJPEG stream without a display.
+ * <p>
+ * The frames are streamed: the calling thread reconstructs the territories and draws them while an encoder thread
+ * writes the previous frames. Both share a fixed set of {@value #BUFFERS} frame buffers, so the memory used does not
+ * depend on the length of the run. Consecutive ticks with the same territory are drawn and encoded only once and shown
+ * for longer.
+ */
+public class VideoExporter {
+    /** The number of frame buffers shared by the drawing and the encoding thread. */
+    private static final int BUFFERS = 3;
+    /** The longest delay of a GIF frame in hundredths of a second. */
+    private static final int MAX_GIF_DELAY = 0xFFFF;
+
+    /**
+     * The formats a simulation can be exported to
+     */
+    public enum Format {
+        /** An animated GIF which is shown in a loop. */
+        GIF,
+        /** Concatenated JPEG images, one per tick, as read by e.g. {@code ffmpeg -f mjpeg}. */
+        MJPEG
+    }
+
+    private final int _width;
+    private final int _height;
+    private final Format _format;
+    private int _millisPerTick = 100;
+    private float _quality = 0.8f;
+    private double _scale, _centeredColumn, _centeredRow;
+    private boolean _fit = true;
+
+    /**
+     * Creates a new exporter
+     *
+     * @param width
+     *            The width of the frames in pixels
+     * @param height
+     *            The height of the frames in pixels
+     * @param format
+     *            The format to write
+     */
+    public VideoExporter(int width, int height, Format format) {
+        if ((width < 1) || (height < 1)) throw new IllegalArgumentException("The frame size must be positive.");
+        this._width = width;
+        this._height = height;
+        this._format = format;
+    }
+
+    /**
+     * Sets how long a tick is shown. GIF frames are shown for multiples of 10 milliseconds.
+     *
+     * @param millisPerTick
+     *            The time in milliseconds
+     */
+    public void setMillisPerTick(int millisPerTick) {
+        if (millisPerTick < 1) throw new IllegalArgumentException("The time per tick must be positive.");
+        this._millisPerTick = millisPerTick;
+    }
+
+    /**
+     * Sets the quality of MJPEG frames
+     *
+     * @param quality
+     *            The quality between 0 and 1
+     */
+    public void setQuality(float quality) {
+        if ((quality < 0) || (quality > 1)) throw new IllegalArgumentException("The quality must be between 0 and 1.");
+        this._quality = quality;
+    }
+
+    /**
+     * Sets the part of the territory to show. Without a view, the view is fitted to the first frame exported.
+     *
+     * @param scale
+     *            The size of a cell in pixels
+     * @param centeredColumn
+     *            The column shown in the center
+     * @param centeredRow
+     *            The row shown in the center
+     */
+    public void setView(double scale, double centeredColumn, double centeredRow) {
+        if (scale <= 0) throw new IllegalArgumentException("The scale must be positive.");
+        this._scale = scale;
+        this._centeredColumn = centeredColumn;
+        this._centeredRow = centeredRow;
+        this._fit = false;
+    }
+
+    /**
+     * Encodes a range of ticks into a stream. The stream is not closed.
+     *
+     * @param replay
+     *            The recorded simulation
+     * @param firstTick
+     *            The first tick to export
+     * @param lastTick
+     *            The last tick to export
+     * @param out
+     *            The stream to write to
+     * @throws IOException
+     *             When the journal can not be read or the stream can not be written
+     * @throws InterruptedException
+     *             When the calling thread is interrupted
+     */
+    public void export(SimulationReplay replay, int firstTick, int lastTick, OutputStream out)
+            throws IOException, InterruptedException {
+        if (firstTick > lastTick) throw new IllegalArgumentException("The range of ticks is empty.");
+        SimulationRenderer renderer = new SimulationRenderer();
+        Territory first = replay.territoryAt(firstTick);
+        if (this._fit) {
+            renderer.fit(first, this._width, this._height);
+        } else {
+            renderer.setView(this._scale, this._centeredColumn, this._centeredRow);
+        }
+
+        BlockingQueue<Frame> free = new ArrayBlockingQueue<>(BUFFERS);
+        BlockingQueue<Frame> full = new ArrayBlockingQueue<>(BUFFERS + 1);
+        for (int i = 0; i < BUFFERS; ++i) {
+            free.add(new Frame(new BufferedImage(this._width, this._height, BufferedImage.TYPE_INT_RGB)));
+        }
+        Encoder encoder = new Encoder(this._format == Format.GIF ? new GifWriter(out) : new MjpegWriter(out), free, full);
+        Thread thread = new Thread(encoder, "VideoExporter encoder");
+        thread.start();
+        boolean done = false;
+        try {
+            Frame frame = null;
+            Territory shown = null;
+            for (int tick = firstTick; (tick <= lastTick) && (encoder._error == null); ++tick) {
+                Territory tty = tick == firstTick ? first : replay.territoryAt(tick);
+                if ((frame != null) && sameWorldObjects(tty, shown)) {
+                    ++frame._ticks;
+                    continue;
+                }
+                if (frame != null) {
+                    full.put(frame);
+                }
+                frame = free.take();
+                renderer.render(frame._image, new AnimatedTerritory(tty), tick);
+                frame._ticks = 1;
+                shown = tty;
+            }
+            if (frame != null) {
+                full.put(frame);
+            }
+            done = true;
+        } finally {
+            full.offer(Frame.END); // never full, it has room for all frames and the end
+            if (!done) {
+                thread.interrupt(); // don't encode the rest of an aborted export
+            }
+            joinUninterruptibly(thread);
+        }
+        if (encoder._error != null) throw encoder._error;
+    }
+
+    /**
+     * Waits for a thread to die. An interrupt does not stop the waiting, but the interrupt status is kept.
+     */
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            while (true) {
+                try {
+                    thread.join();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return Whether both territories contain the same world objects in the same order
+     */
+    private static boolean sameWorldObjects(Territory a, Territory b) {
+        List<WorldObject> wobsA = a.worldObjects();
+        List<WorldObject> wobsB = b.worldObjects();
+        if (wobsA.size() != wobsB.size()) return false;
+        for (int i = 0; i < wobsA.size(); ++i) {
+            if (wobsA.get(i) != wobsB.get(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Exports a journal into an animated GIF or an MJPEG stream without a display.
+     * <p>
+     * Arguments: {@code <journal> <file> [--format gif|mjpeg] [--from <tick>] [--to <tick>] [--size <width>x<height>]
+     * [--millis-per-tick <ms>]}. By default every tick is exported in 640x480 pixels as a GIF with 100 milliseconds
+     * per tick.
+     *
+     * @param args
+     *            The command line arguments
+     * @throws IOException
+     *             When the journal can not be read or the file can not be written
+     * @throws InterruptedException
+     *             When the main thread is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 2) throw new IllegalArgumentException("A journal and a file are required.");
+        Format format = Format.GIF;
+        int from = 0;
+        int to = Integer.MAX_VALUE;
+        int width = 640;
+        int height = 480;
+        int millisPerTick = 100;
+        for (int i = 2; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--format":
+                    format = Format.valueOf(args[++i].toUpperCase());
+                    break;
+                case "--from":
+                    from = Integer.parseInt(args[++i]);
+                    break;
+                case "--to":
+                    to = Integer.parseInt(args[++i]);
+                    break;
+                case "--size":
+                    String[] size = args[++i].split("x");
+                    width = Integer.parseInt(size[0]);
+                    height = Integer.parseInt(size[1]);
+                    break;
+                case "--millis-per-tick":
+                    millisPerTick = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        VideoExporter exporter = new VideoExporter(width, height, format);
+        exporter.setMillisPerTick(millisPerTick);
+        try (SimulationReplay replay = new SimulationReplay(Paths.get(args[0]));
+                OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[1])))) {
+            exporter.export(replay, from, Math.min(to, replay.lastTick()), out);
+        }
+    }
+
+    /**
+     * A frame buffer and the number of ticks it is shown for
+     */
+    private static final class Frame {
+        /** Put into the queue of drawn frames after the last one; compared by identity. */
+        static final Frame END = new Frame(null);
+
+        final BufferedImage _image;
+        int _ticks;
+
+        Frame(BufferedImage image) {
+            this._image = image;
+        }
+    }
+
+    /**
+     * Writes the drawn frames and returns their buffers. After an error, it keeps returning the buffers without
+     * writing them, so that the drawing thread is never blocked.
+     */
+    private static final class Encoder implements Runnable {
+        private final FrameWriter _writer;
+        private final BlockingQueue<Frame> _free;
+        private final BlockingQueue<Frame> _full;
+        volatile IOException _error;
+
+        Encoder(FrameWriter writer, BlockingQueue<Frame> free, BlockingQueue<Frame> full) {
+            this._writer = writer;
+            this._free = free;
+            this._full = full;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Frame frame = this._full.take(); frame != Frame.END; frame = this._full.take()) {
+                    if (this._error == null) {
+                        try {
+                            this._writer.write(frame._image, frame._ticks);
+                        } catch (IOException e) {
+                            this._error = e;
+                        }
+                    }
+                    this._free.add(frame);
+                }
+                if (this._error == null) {
+                    this._writer.finish();
+                }
+            } catch (IOException e) {
+                this._error = e;
+            } catch (InterruptedException e) {
+                this._error = new IOException("The encoder was interrupted.", e);
+            }
+        }
+    }
+
+    /**
+     * Encodes frames in a format
+     */
+    private interface FrameWriter {
+        /**
+         * Writes a frame
+         *
+         * @param image
+         *            The frame
+         * @param ticks
+         *            The number of ticks it is shown for
+         * @throws IOException
+         *             When writing fails
+         */
+        void write(BufferedImage image, int ticks) throws IOException;
+
+        /**
+         * Writes everything after the last frame
+         *
+         * @throws IOException
+         *             When writing fails
+         */
+        void finish() throws IOException;
+    }
+
+    private final class GifWriter implements FrameWriter {
+        private final ImageWriter _writer = ImageIO.getImageWritersByFormatName("gif").next();
+        private final ImageOutputStream _out;
+        private boolean _first = true;
+
+        GifWriter(OutputStream out) {
+            this._out = new MemoryCacheImageOutputStream(out);
+            this._writer.setOutput(this._out);
+        }
+
+        @Override
+        public void write(BufferedImage image, int ticks) throws IOException {
+            if (this._first) {
+                this._writer.prepareWriteSequence(null);
+            }
+            long delay = Math.max(1, Math.round((ticks * (double) VideoExporter.this._millisPerTick) / 10));
+            while (delay > 0) { // longer delays are split into several frames
+                int frameDelay = (int) Math.min(delay, MAX_GIF_DELAY);
+                this._writer.writeToSequence(new IIOImage(image, null, this.metadata(frameDelay)), null);
+                delay -= frameDelay;
+            }
+            this._out.flush(); // drop the cached bytes of the frame
+        }
+
+        @Override
+        public void finish() throws IOException {
+            this._writer.endWriteSequence();
+            this._out.flush();
+            this._writer.dispose();
+        }
+
+        private IIOMetadata metadata(int delay) throws IOException {
+            ImageWriteParam param = this._writer.getDefaultWriteParam();
+            IIOMetadata metadata = this._writer.getDefaultImageMetadata(
+                    ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_RGB), param);
+            String format = metadata.getNativeMetadataFormatName();
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+            IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+            control.setAttribute("disposalMethod", "none");
+            control.setAttribute("userInputFlag", "FALSE");
+            control.setAttribute("transparentColorFlag", "FALSE");
+            control.setAttribute("delayTime", String.valueOf(delay));
+            control.setAttribute("transparentColorIndex", "0");
+            root.appendChild(control);
+
+            if (this._first) { // loop forever
+                IIOMetadataNode applications = new IIOMetadataNode("ApplicationExtensions");
+                IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+                loop.setAttribute("applicationID", "NETSCAPE");
+                loop.setAttribute("authenticationCode", "2.0");
+                loop.setUserObject(new byte[] { 1, 0, 0 });
+                applications.appendChild(loop);
+                root.appendChild(applications);
+                this._first = false;
+            }
+            metadata.setFromTree(format, root);
+            return metadata;
+        }
+    }
+
+    private final class MjpegWriter implements FrameWriter {
+        private final ImageWriter _writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        private final ImageWriteParam _param = this._writer.getDefaultWriteParam();
+        private final OutputStream _out;
+        private final ByteArrayOutputStream _encoded = new ByteArrayOutputStream();
+
+        MjpegWriter(OutputStream out) {
+            this._out = out;
+            this._param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            this._param.setCompressionQuality(VideoExporter.this._quality);
+        }
+
+        @Override
+        public void write(BufferedImage image, int ticks) throws IOException {
+            this._encoded.reset();
+            try (ImageOutputStream out = new MemoryCacheImageOutputStream(this._encoded)) {
+                this._writer.setOutput(out);
+                this._writer.write(null, new IIOImage(image, null, null), this._param);
+            }
+            for (int i = 0; i < ticks; ++i) { // the stream has no durations, so the frame is repeated
+                this._encoded.writeTo(this._out);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            this._out.flush();
+            this._writer.dispose();
+        }
+    }
+}
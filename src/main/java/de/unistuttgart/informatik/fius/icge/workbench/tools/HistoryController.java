@@ -0,0 +1,138 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.workbench.tools;
+
+import java.awt.EventQueue;
+import java.lang.ref.WeakReference;
+
+import javax.swing.JSlider;
+import javax.swing.Timer;
+
+import de.unistuttgart.informatik.fius.icge.event.Event;
+import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.ResumeEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.journal.SimulationHistory;
+import de.unistuttgart.informatik.fius.icge.workbench.Workbench.SetSimulationEvent;
+import de.unistuttgart.informatik.fius.icge.workbench.WorkbenchView;
+import de.unistuttgart.informatik.fius.icge.workbench.swing.ToolBar;
+
+/**
+ * This class controls the timeline slider, which shows past territories of the simulation
+ * <p>
+ * While the slider is at its right end, the current territory is shown. Moving it to the left pauses the simulation and
+ * shows the territory at the chosen tick, which is taken from a {@link SimulationHistory}. Resuming the simulation shows
+ * the current territory again.
+ */
+public class HistoryController {
+    /** How often the range of the slider is updated in milliseconds. */
+    private static final int UPDATE_MILLIS = 250;
+
+    private final WeakReference<WorkbenchView> _view;
+    private final JSlider _slider;
+    private final Timer _timer;
+    private SimulationHistory _history;
+    /** Whether the slider is being changed by this controller instead of the user. */
+    private boolean _updating = false;
+
+    /**
+     * Creates a history controller.
+     *
+     * @param toolBar
+     *            The ToolBar to use.
+     * @param view
+     *            The view to use.
+     */
+    public HistoryController(ToolBar toolBar, WorkbenchView view) {
+        this._view = new WeakReference<>(view);
+        this._slider = new JSlider(JSlider.HORIZONTAL, 0, 0, 0);
+        this._slider.setToolTipText("Timeline");
+        this._slider.setEnabled(false);
+        this._slider.addChangeListener(e -> this.sliderMoved());
+        toolBar.addSlider(this._slider, -1);
+
+        this._timer = new Timer(UPDATE_MILLIS, e -> this.updateRange());
+        this._timer.start();
+
+        EventDispatcher.addListener(SetSimulationEvent.class, this::handleSetSimulation);
+        EventDispatcher.addListener(ResumeEvent.class, this::handleResume);
+    }
+
+    private boolean handleSetSimulation(Event ev) {
+        WorkbenchView view = this._view.get();
+        if (view == null) return false; // Unregister in case the view doesn't exist anymore
+        if (view == ((SetSimulationEvent) ev).view) {
+            EventQueue.invokeLater(() -> this.setSimulation(view.simulation())); // not while an event is raised
+        }
+        return true;
+    }
+
+    private boolean handleResume(Event ev) {
+        WorkbenchView view = this._view.get();
+        if (view == null) return false;
+        if (view.simulation() == ((SimulationEvent) ev).simulation) {
+            EventQueue.invokeLater(this::showCurrent);
+        }
+        return true;
+    }
+
+    private void setSimulation(Simulation sim) {
+        if (this._history != null) {
+            if (this._history.simulation() == sim) return;
+            this._history.close();
+        }
+        this._history = sim == null ? null : new SimulationHistory(sim);
+        this._slider.setEnabled(sim != null);
+        this.showCurrent();
+    }
+
+    private void showCurrent() {
+        WorkbenchView view = this._view.get();
+        if (view == null) {
+            this._timer.stop();
+            return;
+        }
+        if (view.historic() != null) {
+            view.setHistoric(null);
+        }
+        this.updateRange();
+    }
+
+    private void updateRange() {
+        WorkbenchView view = this._view.get();
+        if ((view == null) || (this._history == null) || (view.historic() != null)) return;
+        this._updating = true;
+        try {
+            int current = this._history.simulation().tickCount();
+            this._slider.setMinimum(Math.min(this._history.earliestTick(), current));
+            this._slider.setMaximum(current);
+            this._slider.setValue(current);
+        } finally {
+            this._updating = false;
+        }
+    }
+
+    private void sliderMoved() {
+        WorkbenchView view = this._view.get();
+        if (this._updating || (view == null) || (this._history == null)) return;
+        Simulation sim = this._history.simulation();
+        int tick = this._slider.getValue();
+        this._slider.setToolTipText("Tick " + tick);
+        if (tick >= this._slider.getMaximum()) {
+            view.setHistoric(null);
+            return;
+        }
+        synchronized (sim) {
+            if (sim.running()) {
+                sim.pause();
+            }
+        }
+        view.setHistoric(this._history.territoryAt(Math.max(tick, this._history.earliestTick())));
+    }
+}
@@ -14,6 +14,7 @@ import javax.swing.JButton;
 import javax.swing.border.BevelBorder;
 
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
 import de.unistuttgart.informatik.fius.icge.workbench.swing.ToolBar;
 
 /**
@@ -30,6 +31,9 @@ public class ToolHandler {
 
     private int currentTool = 0;
 
+    /** The last result of `canApply()` for a cell and for an area. */
+    private Preview cellPreview, areaPreview;
+
     /**
      * Creates a tool handler.
      * 
@@ -119,16 +123,25 @@ public class ToolHandler {
     }
 
     /**
-     * Calls the `canApply()` method on the current tool
+     * Calls the `canApply()` method on the current tool. The result is reused as long as the tool, the cell and the
+     * territory of the simulation stay the same.
      * 
      * @return The result of the `canApply()` call on the current tool
      */
     public boolean canApply(Simulation sim, int column, int row) {
-        return this.tools.get(this.currentTool).canApply(sim, column, row);
+        Tool t = this.tools.get(this.currentTool);
+        Territory tty = sim.territory();
+        Preview p = this.cellPreview;
+        if ((p == null) || !p.matches(t, sim, tty, column, column, row, row)) {
+            p = new Preview(t, sim, tty, column, column, row, row, t.canApply(sim, column, row));
+            this.cellPreview = p;
+        }
+        return p.result;
     }
 
     /**
-     * Calls the `canApply()` method on the current area tool
+     * Calls the `canApply()` method on the current area tool. The result is reused as long as the tool, the area and the
+     * territory of the simulation stay the same.
      * 
      * @return false if the current tool is not an area tool and otherwise the result of the `canApply()` call on the current
      *         tool
@@ -136,7 +149,44 @@ public class ToolHandler {
     public boolean canApply(Simulation sim, int startColumn, int endColumn, int startRow, int endRow) {
         Tool t = this.tools.get(this.currentTool);
         if (!(t instanceof AreaTool)) return false;
-        return ((AreaTool) t).canApply(sim, startColumn, endColumn, startRow, endRow);
+        Territory tty = sim.territory();
+        Preview p = this.areaPreview;
+        if ((p == null) || !p.matches(t, sim, tty, startColumn, endColumn, startRow, endRow)) {
+            p = new Preview(t, sim, tty, startColumn, endColumn, startRow, endRow,
+                    ((AreaTool) t).canApply(sim, startColumn, endColumn, startRow, endRow));
+            this.areaPreview = p;
+        }
+        return p.result;
+    }
+
+    /**
+     * A result of `canApply()` and what it depends on
+     */
+    private static final class Preview {
+        final Tool tool;
+        final Simulation sim;
+        final Territory territory;
+        final int startColumn, endColumn, startRow, endRow;
+        final boolean result;
+
+        Preview(Tool tool, Simulation sim, Territory territory, int startColumn, int endColumn, int startRow, int endRow,
+                boolean result) {
+            this.tool = tool;
+            this.sim = sim;
+            this.territory = territory;
+            this.startColumn = startColumn;
+            this.endColumn = endColumn;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.result = result;
+        }
+
+        boolean matches(Tool tool, Simulation sim, Territory territory, int startColumn, int endColumn, int startRow,
+                int endRow) {
+            return (this.tool == tool) && (this.sim == sim) && (this.territory == territory)
+                    && (this.startColumn == startColumn) && (this.endColumn == endColumn)
+                    && (this.startRow == startRow) && (this.endRow == endRow);
+        }
     }
 
 }
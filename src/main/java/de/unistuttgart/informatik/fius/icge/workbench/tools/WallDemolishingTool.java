@@ -64,7 +64,7 @@ public class WallDemolishingTool extends AbstractTool implements AreaTool {
 
     @Override
     public boolean canApply(Simulation sim, int startColumn, int endColumn, int startRow, int endRow) {
-        return sim.territory().containsWith(wob -> (wob.column >= startColumn) && (wob.row <= endColumn)
+        return sim.territory().containsWith(wob -> (wob.column >= startColumn) && (wob.column <= endColumn)
                 && (wob.row >= startRow) && (wob.row <= endRow) && (wob.state instanceof WallState));
     }
 